@@ -0,0 +1,89 @@
+package com.fileanalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Бенчмарк {@link ArchiveInspector} на ZIP-архиве из синтетического набора файлов.
+ * <p>
+ * {@code inspect} составляет опись архива с определением формата каждой записи,
+ * {@code drain} только распаковывает все записи. Разница между ними — стоимость
+ * определения формата сверх самой распаковки.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ArchiveInspectorBenchmark {
+
+    @Param({"256"})
+    public int files;
+
+    private SyntheticCorpus corpus;
+    private ArchiveInspector inspector;
+    private byte[] archive;
+    private final byte[] drainBuffer = new byte[8192];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = new SyntheticCorpus("disk", files, 42);
+        inspector = new ArchiveInspector(new FileAnalyzer(corpus.getDatabase()), 4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Path file : corpus.getFiles()) {
+                zip.putNextEntry(new ZipEntry(file.getFileName().toString()));
+                zip.write(Files.readAllBytes(file));
+            }
+        }
+        archive = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.delete();
+    }
+
+    @Benchmark
+    public int inspect() throws IOException {
+        return inspector.inspect(new ByteArrayInputStream(archive), "corpus.zip", archive.length)
+                .getEntries().size();
+    }
+
+    @Benchmark
+    public long drain() throws IOException {
+        long total = 0;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            while (zip.getNextEntry() != null) {
+                int read;
+                while ((read = zip.read(drainBuffer)) > 0) {
+                    total += read;
+                }
+            }
+        }
+        return total;
+    }
+}
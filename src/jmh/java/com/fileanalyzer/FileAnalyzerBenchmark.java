@@ -0,0 +1,72 @@
+package com.fileanalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк {@link FileAnalyzer#analyzeFile(File)} на синтетическом наборе файлов.
+ * <p>
+ * Каждый вызов анализирует следующий файл набора по кругу, поэтому в результат входят
+ * как распознанные файлы, так и файлы с неизвестным форматом.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FileAnalyzerBenchmark {
+
+    @Param({"disk", "tmpfs"})
+    public String storage;
+
+    @Param({"stream", "channel"})
+    public String headerReader;
+
+    @Param({"1024"})
+    public int files;
+
+    private SyntheticCorpus corpus;
+    private FileAnalyzer analyzer;
+    private File[] corpusFiles;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = new SyntheticCorpus(storage, files, 42);
+        analyzer = new FileAnalyzer(corpus.getDatabase(), HeaderReader.forMode(headerReader));
+        corpusFiles = corpus.getFiles().stream().map(java.nio.file.Path::toFile).toArray(File[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.delete();
+    }
+
+    @Benchmark
+    public String analyzeFile() {
+        File file = corpusFiles[next];
+        next = (next + 1) % corpusFiles.length;
+        try {
+            return analyzer.analyzeFile(file);
+        } catch (UnsupportedFileFormatException e) {
+            return null;
+        }
+    }
+}
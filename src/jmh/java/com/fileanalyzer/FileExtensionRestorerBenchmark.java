@@ -0,0 +1,104 @@
+package com.fileanalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сквозной бенчмарк {@link FileExtensionRestorer#restoreExtension(File)}.
+ * <p>
+ * Часть файлов набора переименовывается так, чтобы их расширение не совпадало с содержимым.
+ * Для таких файлов вызов выполняет переименование, после чего бенчмарк возвращает прежнее
+ * имя, поэтому результат включает стоимость двух переименований. Остальные файлы уже имеют
+ * верное расширение или неизвестный формат.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FileExtensionRestorerBenchmark {
+    // Каждый n-й файл получает неверное расширение
+    private static final int MISNAMED_EVERY = 4;
+
+    @Param({"disk", "tmpfs"})
+    public String storage;
+
+    @Param({"1024"})
+    public int files;
+
+    private SyntheticCorpus corpus;
+    private FileExtensionRestorer restorer;
+    private File[] corpusFiles;
+    // Имя, которое получит файл после восстановления, или null
+    private File[] restoredFiles;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpus = new SyntheticCorpus(storage, files, 42);
+        FileAnalyzer analyzer = new FileAnalyzer(corpus.getDatabase());
+        restorer = new FileExtensionRestorer(analyzer);
+        List<Path> paths = corpus.getFiles();
+        corpusFiles = new File[paths.size()];
+        restoredFiles = new File[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            String name = path.getFileName().toString();
+            // Файл с неверным, но поддерживаемым расширением проходит проверку и переименовывается
+            if (i % MISNAMED_EVERY == 1 && !name.endsWith(".pdf")) {
+                path = Files.move(path, path.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".pdf"));
+            }
+            corpusFiles[i] = path.toFile();
+            restoredFiles[i] = restoredName(analyzer, corpusFiles[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        corpus.delete();
+    }
+
+    @Benchmark
+    public FileExtensionRestorer.Outcome restoreExtension() throws IOException {
+        int index = next;
+        next = (next + 1) % corpusFiles.length;
+        FileExtensionRestorer.Outcome outcome = restorer.restoreExtension(corpusFiles[index]);
+        if (outcome == FileExtensionRestorer.Outcome.RESTORED) {
+            // Возвращаем прежнее имя, чтобы следующий проход снова выполнял переименование
+            Files.move(restoredFiles[index].toPath(), corpusFiles[index].toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        return outcome;
+    }
+
+    /**
+     * Определяет имя, которое файл получит после восстановления расширения.
+     */
+    private static File restoredName(FileAnalyzer analyzer, File file) {
+        try {
+            return new File(file.getAbsolutePath() + "." + analyzer.analyzeFile(file));
+        } catch (UnsupportedFileFormatException e) {
+            return null;
+        }
+    }
+}
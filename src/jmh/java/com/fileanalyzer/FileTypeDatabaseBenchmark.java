@@ -0,0 +1,109 @@
+package com.fileanalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк загрузки {@link FileTypeDatabase} и поиска сигнатур.
+ * <p>
+ * База генерируется со случайными сигнатурами заданного количества; часть сигнатур
+ * имеет смещение и маску. Поиск выполняется по заранее подготовленным заголовкам,
+ * половина которых совпадает с сигнатурами базы.
+ * </p>
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FileTypeDatabaseBenchmark {
+    // Количество подготовленных заголовков для поиска
+    private static final int HEADERS = 1024;
+
+    @Param({"16", "1024", "4096"})
+    public int signatures;
+
+    private Path databaseFile;
+    private FileTypeDatabase database;
+    private ByteBuffer[] headers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        databaseFile = Files.createTempFile("magic_numbers", ".txt");
+        try (Writer writer = Files.newBufferedWriter(databaseFile, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < signatures; i++) {
+                byte[] bytes = new byte[2 + random.nextInt(7)];
+                random.nextBytes(bytes);
+                StringBuilder line = new StringBuilder();
+                for (byte b : bytes) {
+                    line.append(String.format("%02X", b));
+                }
+                if (i % 16 == 0) {
+                    line.append("@").append(random.nextInt(512));
+                } else if (i % 16 == 1) {
+                    line.replace(2, 4, "??");
+                }
+                writer.write(line.append(":ext").append(i).append('\n').toString());
+            }
+        }
+        database = new FileTypeDatabase(databaseFile.toString());
+
+        headers = new ByteBuffer[HEADERS];
+        for (int i = 0; i < HEADERS; i++) {
+            byte[] header = new byte[database.getHeaderLength()];
+            random.nextBytes(header);
+            if (i % 2 == 0) {
+                Signature signature = database.getSignatures().get(random.nextInt(signatures));
+                byte[] bytes = signature.getBytes();
+                byte[] mask = signature.getMask();
+                for (int j = 0; j < bytes.length; j++) {
+                    int position = signature.getOffset() + j;
+                    header[position] = (byte) ((header[position] & ~mask[j]) | bytes[j]);
+                }
+            }
+            headers[i] = ByteBuffer.allocateDirect(header.length).put(header).flip();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(databaseFile);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public FileTypeDatabase load() throws IOException {
+        return new FileTypeDatabase(databaseFile.toString());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Signature match() {
+        ByteBuffer header = headers[next];
+        next = (next + 1) % HEADERS;
+        return database.match(header);
+    }
+}
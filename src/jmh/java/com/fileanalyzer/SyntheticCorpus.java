@@ -0,0 +1,160 @@
+package com.fileanalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Синтетический набор файлов для бенчмарков.
+ * <p>
+ * Файлы строятся из сигнатур базы {@code magic_numbers.txt}: сигнатура записывается по своему
+ * смещению, замаскированные биты и остаток файла заполняются случайными байтами. Размеры файлов
+ * чередуются (64 Б, 4 КБ, 64 КБ, 1 МБ), часть файлов не содержит известной сигнатуры.
+ * Набор создаётся на диске или в tmpfs ({@code /dev/shm}), чтобы отделить стоимость
+ * устройства хранения от стоимости самого определения формата.
+ * </p>
+ */
+public class SyntheticCorpus {
+    // Размеры файлов набора
+    private static final int[] SIZES = {64, 4 * 1024, 64 * 1024, 1024 * 1024};
+    // Доля файлов без известной сигнатуры
+    private static final int UNKNOWN_EVERY = 8;
+    // Каталог tmpfs в Linux
+    private static final Path TMPFS = Paths.get("/dev/shm");
+
+    private final Path root;
+    private final Path databaseFile;
+    private final FileTypeDatabase database;
+    private final List<Path> files = new ArrayList<>();
+
+    /**
+     * Создаёт набор файлов.
+     *
+     * @param storage Тип хранилища: {@code disk} или {@code tmpfs}.
+     * @param count   Количество файлов.
+     * @param seed    Начальное значение генератора случайных чисел.
+     * @throws IOException Если не удалось создать файлы.
+     */
+    public SyntheticCorpus(String storage, int count, long seed) throws IOException {
+        root = createRoot(storage);
+        databaseFile = root.resolve("magic_numbers.txt");
+        try (InputStream in = SyntheticCorpus.class.getClassLoader().getResourceAsStream("magic_numbers.txt")) {
+            if (in == null) {
+                throw new IOException("magic_numbers.txt not found on classpath");
+            }
+            Files.copy(in, databaseFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        database = new FileTypeDatabase(databaseFile.toString());
+
+        Random random = new Random(seed);
+        List<Signature> signatures = database.getSignatures();
+        Path data = Files.createDirectories(root.resolve("data"));
+        for (int i = 0; i < count; i++) {
+            int size = SIZES[i % SIZES.length];
+            Signature signature = i % UNKNOWN_EVERY == 0 ? null : signatures.get(random.nextInt(signatures.size()));
+            // Окно заголовка должно поместиться в файл, иначе сигнатура по смещению не совпадёт
+            if (signature != null) {
+                size = Math.max(size, signature.getEnd());
+            }
+            String extension = signature == null ? "bin" : signature.getExtension();
+            Path file = data.resolve("file" + i + "." + extension);
+            Files.write(file, content(signature, size, random));
+            files.add(file);
+        }
+    }
+
+    /**
+     * Создаёт корневой каталог набора в выбранном хранилище.
+     */
+    private static Path createRoot(String storage) throws IOException {
+        switch (storage) {
+            case "disk":
+                return Files.createTempDirectory(Paths.get(System.getProperty("java.io.tmpdir")), "corpus");
+            case "tmpfs":
+                if (!Files.isDirectory(TMPFS)) {
+                    throw new IOException("tmpfs is not available at " + TMPFS);
+                }
+                return Files.createTempDirectory(TMPFS, "corpus");
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+    }
+
+    /**
+     * Формирует содержимое файла с сигнатурой по её смещению.
+     */
+    private static byte[] content(Signature signature, int size, Random random) {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        if (signature == null) {
+            // Нулевой первый байт не совпадает ни с одной сигнатурой базы по смещению 0
+            content[0] = 0;
+            return content;
+        }
+        byte[] bytes = signature.getBytes();
+        byte[] mask = signature.getMask();
+        for (int i = 0; i < bytes.length; i++) {
+            int position = signature.getOffset() + i;
+            content[position] = (byte) ((content[position] & ~mask[i]) | bytes[i]);
+        }
+        return content;
+    }
+
+    /**
+     * @return Каталог с файлами набора.
+     */
+    public Path getDataDirectory() {
+        return root.resolve("data");
+    }
+
+    /**
+     * @return Путь к копии базы сигнатур.
+     */
+    public Path getDatabaseFile() {
+        return databaseFile;
+    }
+
+    /**
+     * @return База сигнатур, по которой построен набор.
+     */
+    public FileTypeDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return Файлы набора.
+     */
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Удаляет набор файлов.
+     *
+     * @throws IOException Если не удалось удалить файлы.
+     */
+    public void delete() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -6,17 +6,58 @@ import org.slf4j.LoggerFactory;
 /**
  * Класс для логирования сообщений в приложении.
  * Использует библиотеку SLF4J для записи логов разного уровня:
+ * - Отладочные сообщения (debug)
  * - Информационные сообщения (info)
  * - Предупреждения (warn)
  * - Ошибки (error)
  * Этот класс предоставляет статические методы для удобного вызова логирования
  * из любого места приложения.
+ * <p>
+ * Методы с шаблоном сообщения ({@code "File: {}"}) подставляют аргументы только если уровень
+ * включён, поэтому на горячем пути не выполняется конкатенация строк. Перегрузки с одним и двумя
+ * аргументами не создают массив аргументов.
+ * </p>
  */
 public class AppLogger {
 
     // Логгер, используемый для записи сообщений
     private static final Logger logger = LoggerFactory.getLogger(AppLogger.class);
 
+    /**
+     * @return true, если включён уровень debug.
+     */
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    /**
+     * @return true, если включён уровень info.
+     */
+    public static boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    /**
+     * Логирует отладочное сообщение с одним аргументом.
+     *
+     * @param format Шаблон сообщения с местом подстановки {@code {}}.
+     * @param arg    Аргумент сообщения.
+     */
+    public static void debug(String format, Object arg) {
+        logger.debug(format, arg);
+    }
+
+    /**
+     * Логирует отладочное сообщение с двумя аргументами.
+     *
+     * @param format Шаблон сообщения с местами подстановки {@code {}}.
+     * @param arg1   Первый аргумент сообщения.
+     * @param arg2   Второй аргумент сообщения.
+     */
+    public static void debug(String format, Object arg1, Object arg2) {
+        logger.debug(format, arg1, arg2);
+    }
+
     /**
      * Логирует информационное сообщение.
      *
@@ -26,6 +67,27 @@ public class AppLogger {
         logger.info(message);
     }
 
+    /**
+     * Логирует информационное сообщение с одним аргументом.
+     *
+     * @param format Шаблон сообщения с местом подстановки {@code {}}.
+     * @param arg    Аргумент сообщения.
+     */
+    public static void info(String format, Object arg) {
+        logger.info(format, arg);
+    }
+
+    /**
+     * Логирует информационное сообщение с двумя аргументами.
+     *
+     * @param format Шаблон сообщения с местами подстановки {@code {}}.
+     * @param arg1   Первый аргумент сообщения.
+     * @param arg2   Второй аргумент сообщения.
+     */
+    public static void info(String format, Object arg1, Object arg2) {
+        logger.info(format, arg1, arg2);
+    }
+
     /**
      * Логирует сообщение об ошибке с указанием исключения.
      *
@@ -44,4 +106,25 @@ public class AppLogger {
     public static void warn(String message) {
         logger.warn(message);
     }
-}
\ No newline at end of file
+
+    /**
+     * Логирует предупреждающее сообщение с одним аргументом.
+     *
+     * @param format Шаблон сообщения с местом подстановки {@code {}}.
+     * @param arg    Аргумент сообщения.
+     */
+    public static void warn(String format, Object arg) {
+        logger.warn(format, arg);
+    }
+
+    /**
+     * Логирует предупреждающее сообщение с двумя аргументами.
+     *
+     * @param format Шаблон сообщения с местами подстановки {@code {}}.
+     * @param arg1   Первый аргумент сообщения.
+     * @param arg2   Второй аргумент сообщения.
+     */
+    public static void warn(String format, Object arg1, Object arg2) {
+        logger.warn(format, arg1, arg2);
+    }
+}
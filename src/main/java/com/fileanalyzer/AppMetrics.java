@@ -0,0 +1,187 @@
+package com.fileanalyzer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Метрики приложения: счётчики и гистограммы задержек.
+ * <p>
+ * Как и {@link AppLogger}, класс предоставляет статические методы, доступные из любого места
+ * приложения. Метрики всегда включены: счётчики построены на {@link LongAdder}, гистограммы —
+ * на {@link LatencyHistogram}, а счётчик типа после первого файла этого типа находится одним
+ * чтением {@link ConcurrentHashMap} без блокировок. Состояние кэша, базы сигнатур и других
+ * компонентов подключается как показатели ({@link #registerGauge(String, LongSupplier)}),
+ * которые вычисляются только при снятии отчёта.
+ * </p>
+ * <p>
+ * Метрики доступны через JMX ({@link MetricsMBean}) и могут периодически выгружаться в файл
+ * в формате JSON или Prometheus ({@link MetricsReporter}).
+ * </p>
+ */
+public final class AppMetrics {
+    /** Время чтения заголовка файла. */
+    public static final LatencyHistogram HEADER_READ = new LatencyHistogram("header_read");
+    /** Время поиска сигнатуры в заголовке. */
+    public static final LatencyHistogram SIGNATURE_MATCH = new LatencyHistogram("signature_match");
+    /** Время эвристического определения формата, если сигнатура не найдена. */
+    public static final LatencyHistogram HEURISTIC_MATCH = new LatencyHistogram("heuristic_match");
+    /** Время переименования файла. */
+    public static final LatencyHistogram RENAME = new LatencyHistogram("rename");
+
+    // Тип, под которым учитываются файлы с неопознанным форматом
+    private static final String UNKNOWN_TYPE = "unknown";
+    // Префикс типа для эвристических результатов: они учитываются отдельно от совпадений сигнатур
+    private static final String HEURISTIC_PREFIX = "heuristic.";
+
+    private static final ConcurrentMap<String, LongAdder> detected = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> detectionLatency = new ConcurrentHashMap<>();
+
+    private AppMetrics() {
+    }
+
+    /**
+     * @return Гистограммы задержек в порядке прохождения файла.
+     */
+    public static LatencyHistogram[] histograms() {
+        return new LatencyHistogram[]{HEADER_READ, SIGNATURE_MATCH, HEURISTIC_MATCH, RENAME};
+    }
+
+    /**
+     * Учитывает результат определения формата файла по его типу. Эвристические результаты
+     * учитываются под типом с префиксом {@code heuristic.}, например {@code heuristic.csv}.
+     *
+     * @param result Результат определения формата.
+     */
+    public static void recordDetection(DetectionResult result) {
+        increment(detected, type(result));
+    }
+
+    /**
+     * Учитывает результат определения формата вместе с его задержкой: от начала чтения заголовка
+     * до получения результата. Задержки накапливаются в отдельной гистограмме для каждого типа.
+     *
+     * @param result Результат определения формата.
+     * @param nanos  Время определения в наносекундах.
+     */
+    public static void recordDetection(DetectionResult result, long nanos) {
+        String type = type(result);
+        increment(detected, type);
+        LatencyHistogram histogram = detectionLatency.get(type);
+        if (histogram == null) {
+            histogram = detectionLatency.computeIfAbsent(type, t -> new LatencyHistogram("detection." + t));
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Учитывает результат восстановления расширения файла.
+     *
+     * @param outcome Результат восстановления.
+     */
+    public static void recordOutcome(FileExtensionRestorer.Outcome outcome) {
+        increment(outcomes, outcome.name().toLowerCase());
+    }
+
+    /**
+     * Учитывает сбой.
+     *
+     * @param reason Короткая причина сбоя, например {@code read} или {@code rename}.
+     */
+    public static void recordFailure(String reason) {
+        increment(failures, reason);
+    }
+
+    /**
+     * Регистрирует показатель, значение которого вычисляется при снятии отчёта.
+     * Показатель с тем же именем заменяется.
+     *
+     * @param name  Имя показателя, например {@code cache_hits}.
+     * @param value Источник значения.
+     */
+    public static void registerGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Удаляет показатель.
+     *
+     * @param name Имя показателя.
+     */
+    public static void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * @return Количество файлов по определённому типу (расширению), отсортированное по типу.
+     */
+    public static Map<String, Long> getDetected() {
+        return sums(detected);
+    }
+
+    /**
+     * @return Гистограммы задержек определения формата по типу файла.
+     */
+    public static Map<String, LatencyHistogram> getDetectionLatency() {
+        return new TreeMap<>(detectionLatency);
+    }
+
+    /**
+     * @return Количество файлов по результату восстановления.
+     */
+    public static Map<String, Long> getOutcomes() {
+        return sums(outcomes);
+    }
+
+    /**
+     * @return Количество сбоев по причине.
+     */
+    public static Map<String, Long> getFailures() {
+        return sums(failures);
+    }
+
+    /**
+     * @return Текущие значения показателей.
+     */
+    public static Map<String, Long> getGauges() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            try {
+                result.put(gauge.getKey(), gauge.getValue().getAsLong());
+            } catch (RuntimeException e) {
+                // Неисправный показатель не должен мешать отчёту
+                AppLogger.debug("Gauge {} failed: {}", gauge.getKey(), e.toString());
+            }
+        }
+        return result;
+    }
+
+    private static String type(DetectionResult result) {
+        if (!result.isDetected()) {
+            return UNKNOWN_TYPE;
+        }
+        return result.isHeuristic() ? HEURISTIC_PREFIX + result.getExtension() : result.getExtension();
+    }
+
+    private static void increment(ConcurrentMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private static Map<String, Long> sums(ConcurrentMap<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            result.put(counter.getKey(), counter.getValue().sum());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,525 @@
+package com.fileanalyzer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Потоковый анализ содержимого архивов ZIP, TAR и GZIP без распаковки на диск.
+ * <p>
+ * Формат каждой записи архива определяется по её начальным байтам через
+ * {@link FileAnalyzer#detect(ByteBuffer)}. Записи, которые сами являются архивами,
+ * обходятся рекурсивно до глубины {@code maxDepth}. Данные читаются одним проходом:
+ * на каждый уровень вложенности держится только переиспользуемый буфер окна заголовка
+ * ({@link FileAnalyzer#getHeaderLength()}) и состояние распаковщика. Для обычных записей
+ * ничего не выделяется, а остаток записи пропускается распаковщиком, поэтому скорость
+ * обхода близка к скорости распаковки.
+ * </p>
+ * <p>
+ * Контейнер определяется по содержимому, а не по имени: {@code docx} или {@code jar}
+ * обходятся как ZIP. Форматы bz2, 7z и rar распознаются, но не раскрываются.
+ * Путь вложенной записи записывается через {@code !/}, например {@code backup.zip!/data.tar!/photo.jpg}.
+ * </p>
+ * <p>
+ * Архив, который не удалось прочитать, отмечается в описи ошибкой, и обход продолжается. Это касается
+ * и исключений времени выполнения распаковщиков: например, {@link ZipInputStream} бросает
+ * {@link IllegalArgumentException} на имени записи не в UTF-8.
+ * </p>
+ */
+public class ArchiveInspector {
+    // Размер блока TAR
+    private static final int TAR_BLOCK = 512;
+    // Размер буфера чтения файла верхнего уровня
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    // Размер буфера распаковщика GZIP и пропуска остатка записи ZIP
+    private static final int SKIP_BUFFER_SIZE = 16 * 1024;
+    // Наибольшая длина длинного имени GNU TAR
+    private static final int MAX_LONG_NAME = 64 * 1024;
+
+    private final FileAnalyzer analyzer;
+    private final int maxDepth;
+
+    /**
+     * Конструктор класса ArchiveInspector.
+     *
+     * @param analyzer Анализатор, определяющий формат записей.
+     * @param maxDepth Максимальная глубина вложенности раскрываемых архивов (1 — только сам файл).
+     */
+    public ArchiveInspector(FileAnalyzer analyzer, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Archive depth must be positive: " + maxDepth);
+        }
+        this.analyzer = analyzer;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Составляет опись файла и всех вложенных в него записей.
+     *
+     * @param file Файл для анализа.
+     * @return Опись; первая запись описывает сам файл.
+     * @throws IOException Если файл не удалось открыть.
+     */
+    public Inventory inspect(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), FILE_BUFFER_SIZE)) {
+            return inspect(in, file.getPath(), file.length());
+        }
+    }
+
+    /**
+     * Составляет и выводит описи всех обычных файлов дерева каталогов (или одного файла).
+     *
+     * @param root Файл или корневой каталог.
+     * @param out  Поток вывода описей.
+     * @return Количество записей во всех описях.
+     * @throws IOException Если произошла ошибка при обходе корневого каталога.
+     */
+    public long inspectTree(Path root, PrintStream out) throws IOException {
+        long[] totals = new long[3];
+        long start = System.nanoTime();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Inventory inventory = inspect(file.toFile());
+                    inventory.print(out);
+                    totals[0]++;
+                    totals[1] += inventory.entries.size();
+                    totals[2] += attrs.size();
+                } catch (IOException | RuntimeException e) {
+                    AppLogger.warn("Failed to inspect: {} ({})", file, e.toString());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                AppLogger.warn("Failed to visit: {} ({})", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        String summary = String.format("Inspected %d files with %d entries in %.2f s: %.2f MB/sec",
+                totals[0], totals[1], seconds, totals[2] / seconds / (1024 * 1024));
+        AppLogger.info(summary);
+        System.out.println(summary);
+        return totals[1];
+    }
+
+    /**
+     * Составляет опись данных потока и всех вложенных в них записей.
+     * <p>
+     * Поток читается до конца последней раскрытой записи и не закрывается.
+     *
+     * @param in   Поток с данными файла.
+     * @param name Имя, под которым файл записывается в опись.
+     * @param size Размер данных или -1, если он неизвестен.
+     * @return Опись; первая запись описывает сам файл.
+     * @throws IOException Если произошла ошибка при чтении потока.
+     */
+    public Inventory inspect(InputStream in, String name, long size) throws IOException {
+        Inventory inventory = new Inventory(name, maxDepth);
+        inspect(in, name, size, 0, inventory);
+        return inventory;
+    }
+
+    /**
+     * Определяет формат записи и при необходимости раскрывает её.
+     *
+     * @param in        Данные записи.
+     * @param path      Путь записи в описи.
+     * @param size      Размер записи или -1.
+     * @param depth     Глубина вложенности записи (0 — сам файл).
+     * @param inventory Заполняемая опись.
+     */
+    private void inspect(InputStream in, String path, long size, int depth, Inventory inventory)
+            throws IOException {
+        byte[] header = inventory.headerBuffer(depth, analyzer.getHeaderLength());
+        int read = in.readNBytes(header, 0, header.length);
+        DetectionResult result = analyzer.detect(ByteBuffer.wrap(header, 0, read));
+        Entry entry = new Entry(path, depth, size, result);
+        inventory.entries.add(entry);
+
+        String extension = result.getExtension();
+        if (extension == null || depth + 1 >= maxDepth) {
+            return;
+        }
+        // Прочитанный заголовок возвращается перед остатком данных только для раскрываемых архивов
+        InputStream data = new SequenceInputStream(new ByteArrayInputStream(header, 0, read), in);
+        try {
+            switch (extension) {
+                case "zip":
+                    inspectZip(data, path, depth + 1, inventory);
+                    break;
+                case "tar":
+                    inspectTar(data, path, depth + 1, inventory);
+                    break;
+                case "gz":
+                    inspectGzip(data, path, depth + 1, inventory);
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Повреждённый архив не прерывает обход внешнего архива
+            AppLogger.debug("Failed to read archive: {} ({})", path, e.toString());
+            entry.error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            inventory.errors++;
+        }
+    }
+
+    private void inspectZip(InputStream in, String path, int depth, Inventory inventory) throws IOException {
+        // Закрытие освобождает Inflater сразу, не дожидаясь сборщика мусора; внешний поток остаётся открытым
+        try (ZipInputStream zip = new ZipInputStream(new NonClosingInputStream(in))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                if (!zipEntry.isDirectory()) {
+                    inspect(new NonClosingInputStream(zip), path + "!/" + zipEntry.getName(), zipEntry.getSize(),
+                            depth, inventory);
+                    // getNextEntry пропускает остаток записи блоками по 512 байт; большой буфер быстрее
+                    byte[] buffer = inventory.skipBuffer();
+                    while (zip.read(buffer, 0, buffer.length) > 0) {
+                        // Данные не нужны, только продвижение распаковщика
+                    }
+                }
+            }
+        }
+    }
+
+    private void inspectGzip(InputStream in, String path, int depth, Inventory inventory) throws IOException {
+        String name = new File(path.substring(path.lastIndexOf("!/") + 1)).getName();
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".tgz")) {
+            name = name.substring(0, name.length() - 4) + ".tar";
+        } else if (lower.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new NonClosingInputStream(in), SKIP_BUFFER_SIZE)) {
+            inspect(gzip, path + "!/" + name, -1, depth, inventory);
+        }
+    }
+
+    private void inspectTar(InputStream in, String path, int depth, Inventory inventory) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        String longName = null;
+        while (readBlock(in, header)) {
+            if (isZeroBlock(header)) {
+                return;
+            }
+            long size = parseTarNumber(header, 124, 12);
+            byte type = header[156];
+            String name;
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            } else {
+                name = tarString(header, 0, 100);
+                if ("ustar".equals(tarString(header, 257, 6))) {
+                    String prefix = tarString(header, 345, 155);
+                    if (!prefix.isEmpty()) {
+                        name = prefix + "/" + name;
+                    }
+                }
+            }
+
+            BoundedInputStream data = new BoundedInputStream(in, size);
+            if (type == 'L') {
+                // Длинное имя GNU: данные записи содержат имя следующей записи
+                if (size > MAX_LONG_NAME) {
+                    throw new IOException("GNU long name is too long: " + size + " bytes");
+                }
+                longName = new String(data.readAllBytes(), StandardCharsets.UTF_8).replace("\0", "");
+            } else if (type == '0' || type == 0 || type == '7') {
+                inspect(data, path + "!/" + name, size, depth, inventory);
+            }
+            data.skipRemaining();
+            skipFully(in, (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+        }
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, block.length);
+        if (read == 0) {
+            return false;
+        }
+        if (read < block.length) {
+            throw new EOFException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String tarString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Разбирает числовое поле TAR: восьмеричное число или двоичное (base-256) для больших значений.
+     */
+    private static long parseTarNumber(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header");
+            }
+            value = (value << 3) | (b - '0');
+        }
+        return value;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated archive entry");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Поток, не закрывающий исходный: вложенные распаковщики не должны закрывать внешний архив.
+     */
+    private static class NonClosingInputStream extends FilterInputStream {
+        private NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // Исходный поток закрывает его владелец
+        }
+    }
+
+    /**
+     * Поток, ограниченный данными одной записи TAR.
+     */
+    private static final class BoundedInputStream extends NonClosingInputStream {
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void skipRemaining() throws IOException {
+            skipFully(in, remaining);
+            remaining = 0;
+        }
+    }
+
+    /**
+     * Запись описи: файл или вложенная запись архива.
+     */
+    public static final class Entry {
+        private final String path;
+        private final int depth;
+        private final long size;
+        private final DetectionResult result;
+        private String error;
+
+        private Entry(String path, int depth, long size, DetectionResult result) {
+            this.path = path;
+            this.depth = depth;
+            this.size = size;
+            this.result = result;
+        }
+
+        /**
+         * @return Путь записи; уровни вложенности разделяются {@code !/}.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return Глубина вложенности (0 — сам файл).
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return Размер записи в байтах или -1, если он неизвестен.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return Результат определения формата записи.
+         */
+        public DetectionResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return Ошибка чтения архива или null, если архив прочитан полностью.
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String extension = result.isDetected() ? result.getExtension() : "-";
+            return path + '\t' + extension + '\t' + (size < 0 ? "-" : Long.toString(size))
+                    + (error == null ? "" : "\terror: " + error);
+        }
+    }
+
+    /**
+     * Опись одного файла: сам файл и все раскрытые вложенные записи в порядке обхода.
+     */
+    public static final class Inventory {
+        private final String archive;
+        private final List<Entry> entries = new ArrayList<>();
+        // Буферы заголовков по уровням вложенности: буфер уровня занят, пока раскрывается архив этого уровня
+        private final byte[][] headers;
+        private byte[] skip;
+        private int errors;
+
+        private Inventory(String archive, int maxDepth) {
+            this.archive = archive;
+            this.headers = new byte[maxDepth][];
+        }
+
+        private byte[] skipBuffer() {
+            if (skip == null) {
+                skip = new byte[SKIP_BUFFER_SIZE];
+            }
+            return skip;
+        }
+
+        private byte[] headerBuffer(int depth, int length) {
+            if (headers[depth] == null || headers[depth].length != length) {
+                headers[depth] = new byte[length];
+            }
+            return headers[depth];
+        }
+
+        /**
+         * @return Имя исследованного файла.
+         */
+        public String getArchive() {
+            return archive;
+        }
+
+        /**
+         * @return Неизменяемый список записей описи.
+         */
+        public List<Entry> getEntries() {
+            return Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * @return Количество архивов, которые не удалось прочитать полностью.
+         */
+        public int getErrors() {
+            return errors;
+        }
+
+        /**
+         * Выводит опись: по одной записи на строку (путь, расширение, размер через табуляцию).
+         *
+         * @param out Поток вывода.
+         */
+        public void print(PrintStream out) {
+            for (Entry entry : entries) {
+                out.println(entry);
+            }
+        }
+    }
+}
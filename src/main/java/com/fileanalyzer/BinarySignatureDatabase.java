@@ -0,0 +1,160 @@
+package com.fileanalyzer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат скомпилированной базы сигнатур.
+ * <p>
+ * Файл содержит сигнатуры, признаки однозначности для быстрой проверки заявленного расширения
+ * и плоские массивы {@link SignatureMatcher}. Загрузка сводится к последовательному чтению
+ * из отображённого в память буфера: текст не разбирается, граф не строится, попарная проверка
+ * сигнатур не выполняется. Все числа записаны в порядке big-endian.
+ * </p>
+ * <pre>
+ * int    MAGIC ("FEAD")
+ * int    VERSION
+ * long   CRC32 исходного текстового файла
+ * int    количество сигнатур
+ *        для каждой: int смещение, short длина, байты, маска, byte флаги, short + UTF-8 расширение
+ * ...    массивы SignatureMatcher
+ * </pre>
+ * Контрольная сумма исходного текста позволяет обнаружить устаревшую двоичную базу.
+ */
+public class BinarySignatureDatabase {
+    private static final int MAGIC = 0x46454144;
+    private static final int VERSION = 1;
+    // Флаг однозначной сигнатуры
+    private static final int FLAG_UNAMBIGUOUS = 1;
+
+    private BinarySignatureDatabase() {
+    }
+
+    /**
+     * Вычисляет контрольную сумму исходного текста базы.
+     *
+     * @param text Содержимое текстового файла с магическими числами.
+     * @return Значение CRC32.
+     */
+    public static long checksum(byte[] text) {
+        CRC32 crc = new CRC32();
+        crc.update(text);
+        return crc.getValue();
+    }
+
+    /**
+     * Записывает базу в двоичном формате.
+     *
+     * @param database       База сигнатур.
+     * @param sourceChecksum Контрольная сумма исходного текста (см. {@link #checksum(byte[])}).
+     * @param output         Поток для записи.
+     * @throws IOException Если произошла ошибка записи.
+     */
+    public static void write(FileTypeDatabase database, long sourceChecksum, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        List<Signature> signatures = database.getSignatures();
+        Map<Signature, Integer> index = new IdentityHashMap<>();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceChecksum);
+        out.writeInt(signatures.size());
+        for (int i = 0; i < signatures.size(); i++) {
+            Signature signature = signatures.get(i);
+            index.put(signature, i);
+            out.writeInt(signature.getOffset());
+            out.writeShort(signature.length());
+            out.write(signature.getBytes());
+            out.write(signature.getMask());
+            out.writeByte(database.isUnambiguous(i) ? FLAG_UNAMBIGUOUS : 0);
+            byte[] extension = signature.getExtension().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(extension.length);
+            out.write(extension);
+        }
+        database.getMatcher().writeTo(out, index);
+        out.flush();
+    }
+
+    /**
+     * Проверяет, что двоичная база скомпилирована из данного текста.
+     *
+     * @param buffer Двоичная база.
+     * @param text   Содержимое текстового файла с магическими числами.
+     * @return true, если контрольные суммы совпадают.
+     * @throws IOException Если буфер не является двоичной базой сигнатур.
+     */
+    public static boolean isCurrent(ByteBuffer buffer, byte[] text) throws IOException {
+        return readChecksum(buffer) == checksum(text);
+    }
+
+    /**
+     * Читает контрольную сумму исходного текста из заголовка двоичной базы.
+     *
+     * @param buffer Двоичная база.
+     * @return Контрольная сумма исходного текста.
+     * @throws IOException Если буфер не является двоичной базой сигнатур.
+     */
+    public static long readChecksum(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        in.position(0);
+        readHeader(in);
+        return in.getLong();
+    }
+
+    /**
+     * Читает базу из двоичного формата.
+     *
+     * @param buffer Двоичная база (например, отображённый в память файл).
+     * @return База сигнатур.
+     * @throws IOException Если буфер не является двоичной базой сигнатур или повреждён.
+     */
+    public static FileTypeDatabase read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        in.position(0);
+        try {
+            readHeader(in);
+            in.getLong();
+            int count = in.getInt();
+            List<Signature> signatures = new ArrayList<>(count);
+            boolean[] unambiguous = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                int offset = in.getInt();
+                // Длины записаны как беззнаковые 16-битные числа
+                byte[] bytes = new byte[in.getShort() & 0xFFFF];
+                byte[] mask = new byte[bytes.length];
+                in.get(bytes).get(mask);
+                unambiguous[i] = (in.get() & FLAG_UNAMBIGUOUS) != 0;
+                byte[] extension = new byte[in.getShort() & 0xFFFF];
+                in.get(extension);
+                signatures.add(new Signature(bytes, mask, offset, new String(extension, StandardCharsets.UTF_8)));
+            }
+            SignatureMatcher matcher = SignatureMatcher.readFrom(in, signatures);
+            return new FileTypeDatabase(signatures, matcher, unambiguous);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            // Повреждённые длины и индексы; вызывающий код переходит на текстовую базу
+            throw new IOException("Corrupted binary signature database", e);
+        }
+    }
+
+    /**
+     * Проверяет магическое число и версию формата.
+     */
+    private static void readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < 16 || in.getInt() != MAGIC) {
+            throw new IOException("Not a binary signature database");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary signature database version: " + version);
+        }
+    }
+}
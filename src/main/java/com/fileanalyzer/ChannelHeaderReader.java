@@ -0,0 +1,64 @@
+package com.fileanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение заголовка через {@link FileChannel} позиционным чтением в прямой буфер потока.
+ * <p>
+ * Каждый диапазон разметки читается отдельным позиционным чтением, поэтому дальняя сигнатура
+ * (например, сектор 32769 у ISO9660) стоит одного чтения нескольких байтов, а не всего окна до неё.
+ * </p>
+ * <p>
+ * Каждый поток переиспользует собственный прямой {@link ByteBuffer}, поэтому в установившемся
+ * режиме чтение заголовка не выделяет буферов в куче и не копирует данные через
+ * промежуточный массив.
+ * </p>
+ * Файлы не отображаются в память: отображение создаётся заново для каждого файла и освобождается
+ * только сборщиком мусора, поэтому на большом дереве оно выделяет память на каждый файл и упирается
+ * в ограничение количества отображений процесса ({@code vm.max_map_count}).
+ */
+public class ChannelHeaderReader implements HeaderReader {
+    private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<>();
+
+    @Override
+    public ByteBuffer read(File file, HeaderLayout layout) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = buffer(layout.getLength());
+            for (int range = 0; range < layout.getRangeCount(); range++) {
+                // Разница между смещением в файле и позицией в буфере для этого диапазона
+                long delta = layout.getStart(range) - layout.getPosition(range);
+                buffer.limit(layout.getPosition(range) + layout.getEnd(range) - layout.getStart(range));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, delta + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                if (buffer.hasRemaining()) {
+                    // Файл закончился: дальние диапазоны не читаем
+                    break;
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Возвращает очищенный прямой буфер текущего потока, увеличивая его при необходимости.
+     *
+     * @param windowSize Требуемый размер буфера.
+     * @return Буфер с позицией 0 и пределом {@code windowSize}.
+     */
+    private ByteBuffer buffer(int windowSize) {
+        ByteBuffer buffer = buffers.get();
+        if (buffer == null || buffer.capacity() < windowSize) {
+            buffer = ByteBuffer.allocateDirect(windowSize);
+            buffers.set(buffer);
+        }
+        buffer.clear().limit(windowSize);
+        return buffer;
+    }
+}
@@ -0,0 +1,398 @@
+package com.fileanalyzer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Разобранные аргументы командной строки.
+ * <p>
+ * Формат: {@code [--threads N] [--header-reader stream|channel] [--db <база> [--watch-db]]
+ * [--cache <файл> [--cache-size N]] [--pipeline [--io-concurrency N]] [--plan <план>]
+ * [--no-heuristics] [--dedup [--hardlink]] [--shard k/N [--shard-by path|dir]] [--report <отчёт>]
+ * [--metrics <файл> [--metrics-interval N]] <путь>}
+ * или {@code [--threads N] [--batch-size N] --apply <план>},
+ * или {@code --inventory [--archive-depth N] <путь>},
+ * или {@code --merge <отчёт> <отчёт_части>...},
+ * где путь указывает на файл или каталог.
+ * </p>
+ */
+public class CommandLineOptions {
+    // Размер кэша результатов в памяти по умолчанию
+    private static final int DEFAULT_CACHE_SIZE = 1_000_000;
+    // Количество записей плана между контрольными точками по умолчанию
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    // Глубина вложенности архивов по умолчанию
+    private static final int DEFAULT_ARCHIVE_DEPTH = 4;
+    // Период выгрузки метрик по умолчанию, в секундах
+    private static final int DEFAULT_METRICS_INTERVAL = 10;
+
+    private final String path;
+    private final int threads;
+    private final String headerReader;
+    private final String database;
+    private final boolean watchDatabase;
+    private final String cache;
+    private final int cacheSize;
+    private final boolean pipeline;
+    private final int ioConcurrency;
+    private final String plan;
+    private final String applyPlan;
+    private final int batchSize;
+    private final boolean inventory;
+    private final int archiveDepth;
+    private final String metrics;
+    private final int metricsInterval;
+    private final boolean dedup;
+    private final boolean hardlink;
+    private final String shard;
+    private final String shardBy;
+    private final String report;
+    private final String merge;
+    private final List<String> mergeInputs;
+    private final boolean heuristics;
+
+    private CommandLineOptions(String path, int threads, String headerReader, String database,
+                               boolean watchDatabase, String cache, int cacheSize, boolean pipeline,
+                               int ioConcurrency, String plan, String applyPlan, int batchSize,
+                               boolean inventory, int archiveDepth, String metrics, int metricsInterval,
+                               boolean dedup, boolean hardlink, String shard, String shardBy, String report,
+                               String merge, List<String> mergeInputs, boolean heuristics) {
+        this.path = path;
+        this.threads = threads;
+        this.headerReader = headerReader;
+        this.database = database;
+        this.watchDatabase = watchDatabase;
+        this.cache = cache;
+        this.cacheSize = cacheSize;
+        this.pipeline = pipeline;
+        this.ioConcurrency = ioConcurrency;
+        this.plan = plan;
+        this.applyPlan = applyPlan;
+        this.batchSize = batchSize;
+        this.inventory = inventory;
+        this.archiveDepth = archiveDepth;
+        this.metrics = metrics;
+        this.metricsInterval = metricsInterval;
+        this.dedup = dedup;
+        this.hardlink = hardlink;
+        this.shard = shard;
+        this.shardBy = shardBy;
+        this.report = report;
+        this.merge = merge;
+        this.mergeInputs = mergeInputs;
+        this.heuristics = heuristics;
+    }
+
+    /**
+     * Разбирает аргументы командной строки.
+     *
+     * @param args Аргументы командной строки.
+     * @return Разобранные параметры.
+     * @throws IllegalArgumentException Если аргументы заданы неверно.
+     */
+    public static CommandLineOptions parse(String[] args) {
+        String path = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String headerReader = "channel";
+        String database = null;
+        boolean watchDatabase = false;
+        String cache = null;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+        boolean pipeline = false;
+        // 0 — значение по умолчанию, зависящее от доступности виртуальных потоков
+        int ioConcurrency = 0;
+        String plan = null;
+        String applyPlan = null;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        boolean inventory = false;
+        int archiveDepth = DEFAULT_ARCHIVE_DEPTH;
+        String metrics = null;
+        int metricsInterval = DEFAULT_METRICS_INTERVAL;
+        boolean dedup = false;
+        boolean hardlink = false;
+        String shard = null;
+        String shardBy = "path";
+        String report = null;
+        String merge = null;
+        List<String> paths = new ArrayList<>();
+        boolean heuristics = true;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--threads".equals(arg)) {
+                threads = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if ("--header-reader".equals(arg)) {
+                headerReader = value(args, ++i, arg);
+            } else if ("--db".equals(arg)) {
+                database = value(args, ++i, arg);
+            } else if ("--watch-db".equals(arg)) {
+                watchDatabase = true;
+            } else if ("--cache".equals(arg)) {
+                cache = value(args, ++i, arg);
+            } else if ("--cache-size".equals(arg)) {
+                cacheSize = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if ("--pipeline".equals(arg)) {
+                pipeline = true;
+            } else if ("--io-concurrency".equals(arg)) {
+                ioConcurrency = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if ("--plan".equals(arg)) {
+                plan = value(args, ++i, arg);
+            } else if ("--apply".equals(arg)) {
+                applyPlan = value(args, ++i, arg);
+            } else if ("--batch-size".equals(arg)) {
+                batchSize = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if ("--inventory".equals(arg)) {
+                inventory = true;
+            } else if ("--archive-depth".equals(arg)) {
+                archiveDepth = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if ("--metrics".equals(arg)) {
+                metrics = value(args, ++i, arg);
+            } else if ("--metrics-interval".equals(arg)) {
+                metricsInterval = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if ("--dedup".equals(arg)) {
+                dedup = true;
+            } else if ("--hardlink".equals(arg)) {
+                hardlink = true;
+            } else if ("--shard".equals(arg)) {
+                shard = value(args, ++i, arg);
+            } else if ("--shard-by".equals(arg)) {
+                shardBy = value(args, ++i, arg);
+            } else if ("--report".equals(arg)) {
+                report = value(args, ++i, arg);
+            } else if ("--merge".equals(arg)) {
+                merge = value(args, ++i, arg);
+            } else if ("--no-heuristics".equals(arg)) {
+                heuristics = false;
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                paths.add(arg);
+            }
+        }
+        if (merge != null) {
+            // В режиме слияния все позиционные аргументы — отчёты частей
+            if (paths.isEmpty()) {
+                throw new IllegalArgumentException("Option --merge requires at least one shard report");
+            }
+        } else {
+            if (paths.size() > 1) {
+                throw new IllegalArgumentException("Unexpected argument: " + paths.get(1));
+            }
+            path = paths.isEmpty() ? null : paths.get(0);
+            if (applyPlan != null) {
+                if (path != null || plan != null) {
+                    throw new IllegalArgumentException("Option --apply does not take a file path or --plan");
+                }
+            } else if (path == null) {
+                throw new IllegalArgumentException("No file path provided.");
+            }
+        }
+        if (watchDatabase && database == null) {
+            throw new IllegalArgumentException("Option --watch-db requires --db");
+        }
+        if (hardlink && (!dedup || plan != null)) {
+            throw new IllegalArgumentException("Option --hardlink requires --dedup and cannot be used with --plan");
+        }
+        if (ioConcurrency == 0) {
+            ioConcurrency = RestorePipeline.defaultIoConcurrency();
+        }
+        return new CommandLineOptions(path, threads, headerReader, database, watchDatabase, cache, cacheSize,
+                pipeline, ioConcurrency, plan, applyPlan, batchSize, inventory, archiveDepth,
+                metrics, metricsInterval, dedup, hardlink, shard, shardBy, report, merge,
+                merge == null ? Collections.emptyList() : paths, heuristics);
+    }
+
+    /**
+     * Возвращает значение опции, следующее за её именем.
+     */
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for option: " + option);
+        }
+        return args[index];
+    }
+
+    /**
+     * Разбирает положительное целое значение опции.
+     */
+    private static int parsePositiveInt(String option, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+            // Сообщение об ошибке формируется ниже
+        }
+        throw new IllegalArgumentException("Option " + option + " expects a positive integer: " + value);
+    }
+
+    /**
+     * @return Путь к файлу или каталогу; null в режиме {@code --apply}.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return Количество рабочих потоков для обработки каталога.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return Режим чтения заголовков: {@code stream} или {@code channel}.
+     */
+    public String getHeaderReader() {
+        return headerReader;
+    }
+
+    /**
+     * @return Путь к базе сигнатур (текстовой или {@code .bin}) или null для базы из ресурсов.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return true, если базу сигнатур нужно перезагружать при изменении её файла.
+     */
+    public boolean isWatchDatabase() {
+        return watchDatabase;
+    }
+
+    /**
+     * @return Путь к журналу кэша результатов или null, если кэш не используется.
+     */
+    public String getCache() {
+        return cache;
+    }
+
+    /**
+     * @return Максимальное количество записей кэша в памяти.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return true, если каталог обрабатывается конвейером {@link RestorePipeline}.
+     */
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return Количество одновременных операций на каждом этапе ввода-вывода конвейера.
+     */
+    public int getIoConcurrency() {
+        return ioConcurrency;
+    }
+
+    /**
+     * @return Файл, в который записывается план переименования вместо самих переименований, или null.
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return План переименования, который нужно применить, или null.
+     */
+    public String getApplyPlan() {
+        return applyPlan;
+    }
+
+    /**
+     * @return Количество записей плана между контрольными точками.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return true, если вместо восстановления расширений выводится опись файлов и содержимого архивов.
+     */
+    public boolean isInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return Максимальная глубина вложенности раскрываемых архивов.
+     */
+    public int getArchiveDepth() {
+        return archiveDepth;
+    }
+
+    /**
+     * @return Файл для периодической выгрузки метрик ({@code .json} или текст Prometheus) или null.
+     */
+    public String getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Период выгрузки метрик в секундах.
+     */
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * @return true, если по ходу восстановления ищутся файлы с одинаковым содержимым.
+     */
+    public boolean isDedup() {
+        return dedup;
+    }
+
+    /**
+     * @return true, если найденные дубликаты заменяются жёсткими ссылками.
+     */
+    public boolean isHardlink() {
+        return hardlink;
+    }
+
+    /**
+     * @return Обрабатываемая часть дерева в формате {@code k/N} или null для всего дерева.
+     */
+    public String getShard() {
+        return shard;
+    }
+
+    /**
+     * @return Способ разбиения дерева на части: {@code path} или {@code dir}.
+     */
+    public String getShardBy() {
+        return shardBy;
+    }
+
+    /**
+     * @return Файл, в который записывается отчёт для слияния, или null.
+     */
+    public String getReport() {
+        return report;
+    }
+
+    /**
+     * @return Файл объединённого отчёта в режиме {@code --merge} или null.
+     */
+    public String getMerge() {
+        return merge;
+    }
+
+    /**
+     * @return Отчёты частей, объединяемые в режиме {@code --merge}.
+     */
+    public List<String> getMergeInputs() {
+        return mergeInputs;
+    }
+
+    /**
+     * @return true, если формат файлов без совпавшей сигнатуры определяется эвристически
+     * ({@link ContentClassifier}).
+     */
+    public boolean isHeuristics() {
+        return heuristics;
+    }
+}
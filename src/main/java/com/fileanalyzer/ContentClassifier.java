@@ -0,0 +1,388 @@
+package com.fileanalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Эвристическое определение текстовых форматов, у которых нет магического числа.
+ * <p>
+ * Используется {@link FileAnalyzer}, когда в заголовке не найдена ни одна сигнатура. Анализируется
+ * ограниченное начало данных ({@link #DEFAULT_SAMPLE_LIMIT} байтов) в два прохода:
+ * </p>
+ * <ol>
+ *   <li>гистограмма классов байтов (нулевые, управляющие, старшие) и проверка корректности UTF-8
+ *   определяют кодировку — UTF-8 (ASCII), UTF-16 LE/BE или однобайтовую — либо признают данные
+ *   двоичными;</li>
+ *   <li>разбор структуры по кодовым единицам текста распознаёт XML, HTML, JSON, CSV и TSV;
+ *   остальной текст (в том числе исходный код) считается {@code txt}.</li>
+ * </ol>
+ * <p>
+ * Оба прохода — простые циклы по буферу на локальных счётчиках: классификация не выделяет памяти,
+ * пока формат не определён, поэтому её можно выполнять для каждого нераспознанного файла.
+ * Результат помечается как эвристический ({@link DetectionResult#isHeuristic()}), а его уверенность
+ * не превышает {@link #MAX_CONFIDENCE}, чтобы не смешиваться с точным совпадением сигнатуры.
+ * </p>
+ */
+public class ContentClassifier {
+    /** Размер анализируемого начала данных по умолчанию. */
+    public static final int DEFAULT_SAMPLE_LIMIT = 4096;
+    /** Наибольшая уверенность эвристического результата. */
+    public static final double MAX_CONFIDENCE = 0.9;
+    /** Форматы, которые определяет классификатор; по номеру в списке результат хранится в {@link DetectionCache}. */
+    public static final List<String> FORMATS = List.of("txt", "csv", "tsv", "json", "xml", "html");
+
+    // Кодировки текста
+    private static final int UTF8 = 0;
+    private static final int UTF16LE = 1;
+    private static final int UTF16BE = 2;
+    private static final int SINGLE_BYTE = 3;
+
+    // Кодовая единица вне ASCII при разборе UTF-16: считается буквой
+    private static final int NON_ASCII = 0x100;
+    // Количество строк с одинаковым числом полей после первой, начиная с которого текст считается CSV
+    private static final int MIN_CSV_LINES = 2;
+
+    private final int sampleLimit;
+
+    /**
+     * Создаёт классификатор с размером выборки по умолчанию ({@value #DEFAULT_SAMPLE_LIMIT} байтов).
+     */
+    public ContentClassifier() {
+        this(DEFAULT_SAMPLE_LIMIT);
+    }
+
+    /**
+     * Конструктор класса ContentClassifier.
+     *
+     * @param sampleLimit Наибольшее количество анализируемых байтов с начала данных.
+     */
+    public ContentClassifier(int sampleLimit) {
+        if (sampleLimit < 1) {
+            throw new IllegalArgumentException("Sample limit must be positive: " + sampleLimit);
+        }
+        this.sampleLimit = sampleLimit;
+    }
+
+    /**
+     * Определяет текстовый формат данных.
+     * <p>
+     * Данные анализируются начиная с текущей позиции буфера; позиция и предел не изменяются.
+     *
+     * @param data Данные, начало которых соответствует началу файла.
+     * @return Эвристический результат ({@link DetectionResult#guessed(String, double)})
+     * или {@link DetectionResult#UNSUPPORTED}, если данные двоичные или пустые.
+     */
+    public DetectionResult classify(ByteBuffer data) {
+        int start = data.position();
+        int end = start + Math.min(data.remaining(), sampleLimit);
+        if (start == end) {
+            return DetectionResult.UNSUPPORTED;
+        }
+
+        // Метка порядка байтов однозначно задаёт кодировку
+        int encoding = -1;
+        double certainty = 1;
+        if (end - start >= 3 && (data.get(start) & 0xFF) == 0xEF && (data.get(start + 1) & 0xFF) == 0xBB
+                && (data.get(start + 2) & 0xFF) == 0xBF) {
+            encoding = UTF8;
+            start += 3;
+        } else if (end - start >= 2 && (data.get(start) & 0xFF) == 0xFF && (data.get(start + 1) & 0xFF) == 0xFE) {
+            encoding = UTF16LE;
+            start += 2;
+        } else if (end - start >= 2 && (data.get(start) & 0xFF) == 0xFE && (data.get(start + 1) & 0xFF) == 0xFF) {
+            encoding = UTF16BE;
+            start += 2;
+        }
+        if (encoding < 0) {
+            encoding = detectEncoding(data, start, end);
+            if (encoding < 0) {
+                return DetectionResult.UNSUPPORTED;
+            }
+            // Без метки порядка байтов кодировка выведена статистически
+            certainty = encoding == SINGLE_BYTE ? 0.6 : encoding == UTF8 ? 1 : 0.85;
+        }
+        return sniffStructure(data, start, end, encoding, certainty);
+    }
+
+    /**
+     * Первый проход: гистограмма классов байтов и проверка UTF-8.
+     *
+     * @return Кодировка текста или -1, если данные двоичные.
+     */
+    private static int detectEncoding(ByteBuffer data, int start, int end) {
+        int length = end - start;
+        int zeroEven = 0;
+        int zeroOdd = 0;
+        int control = 0;
+        int high = 0;
+        int invalid = 0;
+        // Количество ожидаемых байтов продолжения текущего символа UTF-8
+        int pending = 0;
+        for (int i = start; i < end; i++) {
+            int b = data.get(i) & 0xFF;
+            if (b == 0) {
+                if (((i - start) & 1) == 0) {
+                    zeroEven++;
+                } else {
+                    zeroOdd++;
+                }
+            } else if (isControl(b)) {
+                control++;
+            }
+            if (b < 0x80) {
+                if (pending > 0) {
+                    invalid++;
+                    pending = 0;
+                }
+                continue;
+            }
+            high++;
+            if (pending > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    pending--;
+                } else {
+                    invalid++;
+                    pending = 0;
+                }
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                pending = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                pending = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                pending = 3;
+            } else {
+                invalid++;
+            }
+        }
+
+        int zeros = zeroEven + zeroOdd;
+        if (zeros > 0) {
+            // Текст UTF-16 в латинице: нулевой старший байт почти у каждой кодовой единицы
+            int units = length / 2;
+            if (units >= 2 && zeroOdd * 2 >= units && zeroEven * 20 <= units) {
+                return UTF16LE;
+            }
+            if (units >= 2 && zeroEven * 2 >= units && zeroOdd * 20 <= units) {
+                return UTF16BE;
+            }
+            return -1;
+        }
+        if (control * 100 > length) {
+            return -1;
+        }
+        if (invalid == 0) {
+            // Незавершённый в конце выборки символ UTF-8 ошибкой не считается
+            return UTF8;
+        }
+        // Однобайтовая кодировка (Latin-1, Windows-1251): даже в кириллическом тексте остаются
+        // пробелы, переводы строк и знаки препинания ASCII
+        return high * 10 <= length * 9 ? SINGLE_BYTE : -1;
+    }
+
+    /**
+     * Второй проход: разбор структуры текста по кодовым единицам.
+     *
+     * @return Эвристический результат или {@link DetectionResult#UNSUPPORTED}, если текст содержит
+     * слишком много управляющих символов.
+     */
+    private static DetectionResult sniffStructure(ByteBuffer data, int start, int end, int encoding,
+                                                  double certainty) {
+        int step = encoding == UTF16LE || encoding == UTF16BE ? 2 : 1;
+        end = start + (end - start) / step * step;
+        int units = (end - start) / step;
+        if (units == 0) {
+            return DetectionResult.UNSUPPORTED;
+        }
+
+        int first = -1;
+        int firstIndex = -1;
+        int last = -1;
+        int control = 0;
+        int lt = 0;
+        int gt = 0;
+        int closingTags = 0;
+        int previous = 0;
+
+        // JSON: вне строк допустимы только структурные символы, числа и литералы true/false/null
+        boolean json = true;
+        boolean inString = false;
+        boolean escaped = false;
+        int depth = 0;
+        int colons = 0;
+
+        // CSV: разделитель выбирается по первой строке, остальные строки должны содержать столько же полей
+        boolean quoted = false;
+        int delimiter = -1;
+        int comma = 0;
+        int semicolon = 0;
+        int tab = 0;
+        int pipe = 0;
+        int lineChars = 0;
+        int expected = 0;
+        int matchingLines = 0;
+        int mismatchedLines = 0;
+
+        for (int i = start; i < end; i += step) {
+            int c = unit(data, i, encoding);
+            if (isControl(c)) {
+                control++;
+            }
+            boolean space = c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+            if (!space) {
+                if (first < 0) {
+                    first = c;
+                    firstIndex = i;
+                }
+                last = c;
+                lineChars++;
+            }
+            if (c == '<') {
+                lt++;
+            } else if (c == '>') {
+                gt++;
+            } else if (c == '/' && previous == '<') {
+                closingTags++;
+            }
+
+            if (json) {
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    json = --depth >= 0;
+                } else if (c == ':') {
+                    colons++;
+                } else if (!space && !isJsonLiteral(c)) {
+                    json = false;
+                }
+            }
+
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == '\n') {
+                    if (delimiter < 0) {
+                        // Конец первой строки: выбираем самый частый разделитель
+                        int best = Math.max(Math.max(comma, semicolon), Math.max(tab, pipe));
+                        expected = best;
+                        delimiter = best == 0 ? 0 : best == comma ? ',' : best == semicolon ? ';'
+                                : best == tab ? '\t' : '|';
+                    } else if (expected > 0) {
+                        int count = delimiter == ',' ? comma : delimiter == ';' ? semicolon
+                                : delimiter == '\t' ? tab : pipe;
+                        if (count == expected) {
+                            matchingLines++;
+                        } else if (lineChars > 0) {
+                            // Пустые строки не учитываются
+                            mismatchedLines++;
+                        }
+                    }
+                    lineChars = 0;
+                    comma = 0;
+                    semicolon = 0;
+                    tab = 0;
+                    pipe = 0;
+                } else if (c == ',') {
+                    comma++;
+                } else if (c == ';') {
+                    semicolon++;
+                } else if (c == '\t') {
+                    tab++;
+                } else if (c == '|') {
+                    pipe++;
+                }
+            }
+            previous = c;
+        }
+
+        if (control * 100 > units) {
+            return DetectionResult.UNSUPPORTED;
+        }
+        if (first == '<') {
+            if (startsWith(data, firstIndex, end, encoding, "<?xml")) {
+                return guess("xml", 0.9, certainty);
+            }
+            if (startsWith(data, firstIndex, end, encoding, "<!doctype html")
+                    || startsWith(data, firstIndex, end, encoding, "<html")) {
+                return guess("html", 0.9, certainty);
+            }
+            if (closingTags > 0 && Math.abs(lt - gt) <= 1) {
+                return guess("xml", 0.6, certainty);
+            }
+        }
+        if (json && (first == '{' || first == '[') && (first == '[' || colons > 0)) {
+            // Полностью попавший в выборку документ надёжнее обрезанного
+            boolean complete = depth == 0 && !inString && (last == '}' || last == ']');
+            return guess("json", complete ? 0.9 : 0.7, certainty);
+        }
+        if (expected > 0 && matchingLines >= MIN_CSV_LINES && mismatchedLines == 0) {
+            return guess(delimiter == '\t' ? "tsv" : "csv", Math.min(0.85, 0.5 + 0.1 * matchingLines), certainty);
+        }
+        return guess("txt", 0.5, certainty);
+    }
+
+    /**
+     * Возвращает кодовую единицу текста: байт для однобайтовых кодировок и UTF-8 (байты старше 0x7F
+     * не влияют на разбор структуры), символ ASCII или {@link #NON_ASCII} для UTF-16.
+     */
+    private static int unit(ByteBuffer data, int index, int encoding) {
+        if (encoding == UTF16LE) {
+            return data.get(index + 1) == 0 ? data.get(index) & 0xFF : NON_ASCII;
+        }
+        if (encoding == UTF16BE) {
+            return data.get(index) == 0 ? data.get(index + 1) & 0xFF : NON_ASCII;
+        }
+        return data.get(index) & 0xFF;
+    }
+
+    /**
+     * Проверяет, начинается ли текст с позиции {@code index} со строки ASCII без учёта регистра.
+     */
+    private static boolean startsWith(ByteBuffer data, int index, int end, int encoding, String prefix) {
+        int step = encoding == UTF16LE || encoding == UTF16BE ? 2 : 1;
+        if (index + prefix.length() * step > end) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            int c = unit(data, index + i * step, encoding);
+            if (Character.toLowerCase(c) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Управляющие символы (включая нулевой), не встречающиеся в тексте; табуляция, переводы строки
+     * и ESC допустимы.
+     */
+    private static boolean isControl(int c) {
+        return c < 0x20 && c != '\t' && c != '\n' && c != '\r' && c != '\f' && c != 0x1B || c == 0x7F;
+    }
+
+    /**
+     * Символы чисел и литералов {@code true}, {@code false}, {@code null} и разделитель элементов.
+     */
+    private static boolean isJsonLiteral(int c) {
+        switch (c) {
+            case ',': case '-': case '+': case '.':
+            case 't': case 'r': case 'u': case 'e': case 'f': case 'a': case 'l': case 's': case 'n': case 'E':
+                return true;
+            default:
+                return c >= '0' && c <= '9';
+        }
+    }
+
+    private static DetectionResult guess(String extension, double confidence, double certainty) {
+        return DetectionResult.guessed(extension, Math.min(MAX_CONFIDENCE, confidence * certainty));
+    }
+}
@@ -0,0 +1,685 @@
+package com.fileanalyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Постоянный кэш результатов определения формата.
+ * <p>
+ * Файл идентифицируется парой (устройство, inode), а если она недоступна — 128-битным хэшем
+ * абсолютного пути. Результат считается действительным, пока не изменились размер и время
+ * модификации файла, поэтому при повторном обходе неизменного дерева на файл тратится только
+ * один вызов stat. Так как переименование не меняет inode, кэш остаётся действительным и после
+ * восстановления расширения.
+ * </p>
+ * <p>
+ * Все сохранённые результаты лежат на диске в индексе — файле записей фиксированной длины,
+ * отсортированных по идентичности. Индекс отображается в память и просматривается двоичным
+ * поиском при промахе LRU, поэтому размер дерева не ограничен объёмом памяти. В памяти хранится
+ * ограниченное число записей с вытеснением давно не использованных (LRU), разбитое на сегменты
+ * для снижения конкуренции потоков.
+ * </p>
+ * <p>
+ * Новые результаты дописываются в журнал рядом с индексом ({@code <файл>.log}). При закрытии
+ * журнал сортируется по частям не больше ёмкости LRU и сливается с индексом в новый индекс;
+ * запись из журнала заменяет запись индекса с той же идентичностью, остальные записи индекса
+ * сохраняются. Журнал, оставшийся после аварийного завершения, сливается с индексом при следующем
+ * открытии. Индекс и журнал привязаны к отпечатку базы сигнатур
+ * ({@link FileTypeDatabase#getFingerprint()}) и к тому, включён ли эвристический классификатор
+ * ({@link ContentClassifier}), и сбрасываются при смене базы или режима: иначе «формат не поддерживается»,
+ * сохранённый без эвристик, скрыл бы от классификатора текстовые файлы.
+ * </p>
+ */
+public class DetectionCache implements Closeable {
+    private static final int MAGIC = 0x46454443;
+    private static final int VERSION = 3;
+    // Количество сегментов LRU
+    private static final int STRIPES = 16;
+    // Код результата: индекс сигнатуры, неподдерживаемый формат или HEURISTIC - номер формата классификатора
+    private static final int UNSUPPORTED = -1;
+    private static final int HEURISTIC = -2;
+    // Заголовок: сигнатура, версия, отпечаток базы
+    private static final int HEADER_SIZE = 16;
+    // Запись: устройство, inode, размер, время модификации, код результата, уверенность
+    private static final int RECORD_SIZE = 44;
+    // Количество записей в одном отображении индекса
+    private static final int CHUNK_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+    // Наибольшее количество записей журнала, сортируемых в памяти за раз
+    private static final int MAX_RUN_RECORDS = 1 << 18;
+
+    private final Path storePath;
+    private final Path logPath;
+    private final long databaseFingerprint;
+    private final boolean heuristics;
+    private final long fingerprint;
+    private final int runRecords;
+    private final Segment[] segments = new Segment[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final boolean unixAttributes;
+    private MappedByteBuffer[] index = new MappedByteBuffer[0];
+    private long indexRecords;
+    private DataOutputStream log;
+    private long logRecords;
+
+    /**
+     * Открывает кэш для анализа с эвристическим классификатором.
+     *
+     * @param storePath   Файл индекса кэша.
+     * @param capacity    Максимальное количество записей в памяти.
+     * @param fingerprint Отпечаток базы сигнатур, с которой получены результаты.
+     * @throws IOException Если не удалось прочитать или создать индекс и журнал.
+     */
+    public DetectionCache(Path storePath, int capacity, long fingerprint) throws IOException {
+        this(storePath, capacity, fingerprint, true);
+    }
+
+    /**
+     * Открывает кэш. Журнал, оставшийся от прерванного запуска, сливается с индексом.
+     *
+     * @param storePath   Файл индекса кэша.
+     * @param capacity    Максимальное количество записей в памяти.
+     * @param fingerprint Отпечаток базы сигнатур, с которой получены результаты.
+     * @param heuristics  Включён ли эвристический классификатор в анализаторе, использующем кэш.
+     * @throws IOException Если не удалось прочитать или создать индекс и журнал.
+     */
+    public DetectionCache(Path storePath, int capacity, long fingerprint, boolean heuristics) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.storePath = storePath;
+        this.logPath = storePath.resolveSibling(storePath.getFileName() + ".log");
+        this.databaseFingerprint = fingerprint;
+        this.heuristics = heuristics;
+        // Смена списка форматов классификатора меняет коды эвристических результатов
+        this.fingerprint = 31 * fingerprint + (heuristics ? ContentClassifier.FORMATS.hashCode() : 0);
+        this.runRecords = Math.min(capacity, MAX_RUN_RECORDS);
+        int segmentCapacity = Math.max(1, capacity / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.unixAttributes = storePath.getFileSystem().supportedFileAttributeViews().contains("unix");
+
+        if (Files.exists(storePath) && !isValidIndex()) {
+            AppLogger.info("Detection cache {} was built for another signature database or heuristics mode, "
+                    + "starting empty", storePath);
+            Files.delete(storePath);
+        }
+        if (Files.exists(logPath)) {
+            recover();
+        }
+        mapIndex();
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logPath)));
+        writeHeader(log);
+    }
+
+    /**
+     * Определяет идентичность файла одним вызовом stat.
+     *
+     * @param file Файл.
+     * @return Идентичность файла или null, если атрибуты прочитать не удалось.
+     */
+    public FileIdentity identify(File file) {
+        Path path = file.toPath();
+        try {
+            if (unixAttributes) {
+                Map<String, Object> attributes = Files.readAttributes(path, "unix:dev,ino,size,lastModifiedTime");
+                return new FileIdentity((Long) attributes.get("dev"), (Long) attributes.get("ino"),
+                        (Long) attributes.get("size"), toMicros((FileTime) attributes.get("lastModifiedTime")));
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            ByteBuffer hash = ByteBuffer.wrap(sha256(path.toAbsolutePath().toString()));
+            return new FileIdentity(hash.getLong(), hash.getLong(), attributes.size(),
+                    toMicros(attributes.lastModifiedTime()));
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static long toMicros(FileTime time) {
+        return time.to(TimeUnit.MICROSECONDS);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Ищет сохранённый результат для файла: сначала в памяти, затем в индексе на диске.
+     *
+     * @param identity Идентичность файла.
+     * @param database База сигнатур, с которой выполняется анализ.
+     * @return Сохранённый результат или null, если его нет, файл изменился или база другая.
+     */
+    public DetectionResult get(FileIdentity identity, FileTypeDatabase database) {
+        Entry entry = null;
+        if (database.getFingerprint() == databaseFingerprint) {
+            Segment segment = segment(identity);
+            entry = segment.get(identity);
+            if (entry == null) {
+                entry = lookup(identity);
+                if (entry != null) {
+                    segment.put(identity, entry);
+                }
+            }
+        }
+        if (entry == null || entry.size != identity.size || entry.modified != identity.modified) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (entry.signature == UNSUPPORTED) {
+            return DetectionResult.UNSUPPORTED;
+        }
+        if (entry.signature <= HEURISTIC) {
+            return DetectionResult.guessed(ContentClassifier.FORMATS.get(HEURISTIC - entry.signature), entry.confidence);
+        }
+        return DetectionResult.of(database.getSignatures().get(entry.signature));
+    }
+
+    /**
+     * Ищет запись в индексе двоичным поиском.
+     *
+     * @return Запись или null, если файла нет в индексе.
+     */
+    private Entry lookup(FileIdentity identity) {
+        MappedByteBuffer[] chunks = index;
+        long low = 0;
+        long high = indexRecords - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            MappedByteBuffer chunk = chunks[(int) (middle / CHUNK_RECORDS)];
+            int at = (int) (middle % CHUNK_RECORDS) * RECORD_SIZE;
+            int order = compare(chunk.getLong(at), chunk.getLong(at + 8), identity.dev, identity.ino);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return new Entry(chunk.getLong(at + 16), chunk.getLong(at + 24), chunk.getInt(at + 32),
+                        chunk.getDouble(at + 36));
+            }
+        }
+        return null;
+    }
+
+    private static int compare(long dev, long ino, long otherDev, long otherIno) {
+        int order = Long.compare(dev, otherDev);
+        return order != 0 ? order : Long.compare(ino, otherIno);
+    }
+
+    /**
+     * Сохраняет результат определения формата.
+     * <p>
+     * Сохраняются совпадения сигнатур, эвристические результаты (формат и уверенность)
+     * и результат «формат не поддерживается»; ошибки чтения не кэшируются.
+     *
+     * @param identity Идентичность файла.
+     * @param database База сигнатур, с которой получен результат.
+     * @param result   Результат определения формата.
+     */
+    public void put(FileIdentity identity, FileTypeDatabase database, DetectionResult result) {
+        if (database.getFingerprint() != databaseFingerprint
+                || (!result.isDetected() && result != DetectionResult.UNSUPPORTED)) {
+            return;
+        }
+        int code;
+        if (result.isHeuristic()) {
+            int format = ContentClassifier.FORMATS.indexOf(result.getExtension());
+            if (format < 0) {
+                return;
+            }
+            code = HEURISTIC - format;
+        } else if (result.isDetected()) {
+            code = database.indexOf(result.getSignature());
+            if (code < 0) {
+                return;
+            }
+        } else {
+            code = UNSUPPORTED;
+        }
+        Record record = new Record(identity.dev, identity.ino, identity.size, identity.modified, code,
+                result.getConfidence());
+        segment(identity).put(identity, new Entry(record.size, record.modified, record.signature, record.confidence));
+        append(record);
+    }
+
+    /**
+     * @return true, если кэш открыт для анализа с эвристическим классификатором.
+     */
+    public boolean isHeuristics() {
+        return heuristics;
+    }
+
+    private Segment segment(FileIdentity identity) {
+        return segments[(identity.hashCode() & 0x7FFFFFFF) % STRIPES];
+    }
+
+    /**
+     * Дописывает запись в журнал.
+     */
+    private synchronized void append(Record record) {
+        if (log == null) {
+            return;
+        }
+        try {
+            record.writeTo(log);
+            logRecords++;
+        } catch (IOException e) {
+            AppLogger.warn("Failed to append to detection cache {}: {}", logPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает буфер журнала на диск.
+     *
+     * @throws IOException Если произошла ошибка записи.
+     */
+    synchronized void flush() throws IOException {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    /**
+     * Сливает с индексом журнал прерванного запуска.
+     * <p>
+     * Если последняя запись журнала оборвана (процесс завершился во время записи), журнал
+     * усекается до конца последней полной записи.
+     */
+    private void recover() throws IOException {
+        if (!hasHeader(logPath)) {
+            Files.delete(logPath);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+            long complete = HEADER_SIZE + (channel.size() - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            if (channel.size() > complete) {
+                AppLogger.warn("Detection cache {} ends with a partial record, truncating {} bytes", logPath,
+                        channel.size() - complete);
+                channel.truncate(complete);
+            }
+        }
+        AppLogger.info("Merging detection cache journal {} left by an interrupted run", logPath);
+        merge();
+    }
+
+    /**
+     * Проверяет заголовок и длину файла индекса.
+     */
+    private boolean isValidIndex() throws IOException {
+        return hasHeader(storePath) && (Files.size(storePath) - HEADER_SIZE) % RECORD_SIZE == 0;
+    }
+
+    /**
+     * @return true, если файл начинается с заголовка кэша для текущей базы сигнатур.
+     */
+    private boolean hasHeader(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == fingerprint;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Отображает индекс в память частями не больше 2 ГБ.
+     */
+    private void mapIndex() throws IOException {
+        if (!Files.exists(storePath)) {
+            index = new MappedByteBuffer[0];
+            indexRecords = 0;
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(storePath, StandardOpenOption.READ)) {
+            long records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((records + CHUNK_RECORDS - 1) / CHUNK_RECORDS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long first = (long) i * CHUNK_RECORDS;
+                long count = Math.min(CHUNK_RECORDS, records - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                        count * RECORD_SIZE);
+            }
+            index = chunks;
+            indexRecords = records;
+        }
+    }
+
+    /**
+     * Сливает журнал с индексом.
+     * <p>
+     * Журнал сортируется частями по {@code runRecords} записей во временные файлы, затем
+     * индекс и отсортированные части сливаются в новый индекс. Из записей с одной идентичностью
+     * остаётся самая поздняя, все прочие записи индекса переносятся без изменений.
+     */
+    private void merge() throws IOException {
+        List<Path> runs = new ArrayList<>();
+        Path temp = storePath.resolveSibling(storePath.getFileName() + ".tmp");
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            sortLog(runs);
+            if (Files.exists(storePath)) {
+                cursors.add(new Cursor(storePath, 0));
+            }
+            for (int i = 0; i < runs.size(); i++) {
+                cursors.add(new Cursor(runs.get(i), i + 1));
+            }
+            PriorityQueue<Cursor> queue = new PriorityQueue<>();
+            for (Cursor cursor : cursors) {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                writeHeader(out);
+                Record last = null;
+                while (!queue.isEmpty()) {
+                    Cursor cursor = queue.poll();
+                    // Курсоры с одинаковой идентичностью упорядочены от новых к старым
+                    if (last == null || last.compareTo(cursor.current) != 0) {
+                        cursor.current.writeTo(out);
+                        last = cursor.current;
+                    }
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        Files.move(temp, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(logPath);
+    }
+
+    /**
+     * Разбивает журнал на отсортированные части без повторов идентичности.
+     */
+    private void sortLog(List<Path> runs) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+            in.skipNBytes(HEADER_SIZE);
+            long remaining = (Files.size(logPath) - HEADER_SIZE) / RECORD_SIZE;
+            while (remaining > 0) {
+                int count = (int) Math.min(runRecords, remaining);
+                remaining -= count;
+                Record[] records = new Record[count];
+                for (int i = 0; i < count; i++) {
+                    records[i] = Record.readFrom(in);
+                }
+                // Сортировка устойчива: из повторов последняя запись журнала остаётся последней
+                Arrays.sort(records);
+                Path run = storePath.resolveSibling(storePath.getFileName() + ".run" + runs.size());
+                runs.add(run);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                    for (int i = 0; i < count; i++) {
+                        if (i + 1 == count || records[i].compareTo(records[i + 1]) != 0) {
+                            records[i].writeTo(out);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint);
+    }
+
+    /**
+     * @return Количество попаданий в кэш.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Количество промахов кэша.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Количество записей в памяти.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return Количество записей в индексе на диске, не считая журнала текущего запуска.
+     */
+    public long getStoredRecords() {
+        return indexRecords;
+    }
+
+    /**
+     * @return Строка со статистикой попаданий.
+     */
+    public String summary() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return String.format("Detection cache: %d hits, %d misses (%.1f%% hit rate), %d entries, %d stored",
+                hitCount, total - hitCount, total == 0 ? 0.0 : hitCount * 100.0 / total, size(), getStoredRecords());
+    }
+
+    /**
+     * Закрывает журнал и сливает его с индексом.
+     *
+     * @throws IOException Если произошла ошибка записи.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (log == null) {
+            return;
+        }
+        log.close();
+        log = null;
+        if (logRecords == 0) {
+            Files.delete(logPath);
+            return;
+        }
+        merge();
+        mapIndex();
+    }
+
+    /**
+     * Идентичность файла: (устройство, inode) или хэш пути, а также размер и время модификации.
+     * Размер и время модификации не участвуют в сравнении: по ним проверяется актуальность записи.
+     */
+    public static final class FileIdentity {
+        private final long dev;
+        private final long ino;
+        private final long size;
+        private final long modified;
+
+        FileIdentity(long dev, long ino, long size, long modified) {
+            this.dev = dev;
+            this.ino = ino;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileIdentity)) {
+                return false;
+            }
+            FileIdentity other = (FileIdentity) o;
+            return dev == other.dev && ino == other.ino;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(dev) * 31 + Long.hashCode(ino);
+        }
+    }
+
+    /**
+     * Сохранённый результат: размер и время модификации файла, код результата и уверенность.
+     */
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final int signature;
+        private final double confidence;
+
+        Entry(long size, long modified, int signature, double confidence) {
+            this.size = size;
+            this.modified = modified;
+            this.signature = signature;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * Запись индекса и журнала. Записи упорядочены по идентичности (устройство, inode).
+     */
+    private static final class Record implements Comparable<Record> {
+        private final long dev;
+        private final long ino;
+        private final long size;
+        private final long modified;
+        private final int signature;
+        private final double confidence;
+
+        Record(long dev, long ino, long size, long modified, int signature, double confidence) {
+            this.dev = dev;
+            this.ino = ino;
+            this.size = size;
+            this.modified = modified;
+            this.signature = signature;
+            this.confidence = confidence;
+        }
+
+        static Record readFrom(DataInputStream in) throws IOException {
+            return new Record(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt(),
+                    in.readDouble());
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(dev);
+            out.writeLong(ino);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeInt(signature);
+            out.writeDouble(confidence);
+        }
+
+        @Override
+        public int compareTo(Record other) {
+            return compare(dev, ino, other.dev, other.ino);
+        }
+    }
+
+    /**
+     * Последовательное чтение отсортированного файла записей при слиянии.
+     * Из курсоров с одинаковой текущей идентичностью первым идёт курсор с большим рангом,
+     * то есть с более поздними записями.
+     */
+    private static final class Cursor implements Comparable<Cursor>, Closeable {
+        private final DataInputStream in;
+        private final int rank;
+        private long remaining;
+        private Record current;
+
+        Cursor(Path path, int rank) throws IOException {
+            this.rank = rank;
+            long length = Files.size(path);
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            // Индекс начинается с заголовка, части журнала — нет
+            int header = rank == 0 ? HEADER_SIZE : 0;
+            in.skipNBytes(header);
+            this.remaining = (length - header) / RECORD_SIZE;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            current = Record.readFrom(in);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int order = current.compareTo(other.current);
+            return order != 0 ? order : Integer.compare(other.rank, rank);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Сегмент LRU-кэша.
+     */
+    private static final class Segment {
+        private final LinkedHashMap<FileIdentity, Entry> map;
+
+        Segment(int capacity) {
+            map = new LinkedHashMap<FileIdentity, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<FileIdentity, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Entry get(FileIdentity identity) {
+            return map.get(identity);
+        }
+
+        synchronized void put(FileIdentity identity, Entry entry) {
+            map.put(identity, entry);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.fileanalyzer;
+
+/**
+ * Результат определения формата файла.
+ * <p>
+ * В отличие от {@link FileAnalyzer#analyzeFile(java.io.File)}, который сообщает о неподдерживаемом
+ * формате исключением, результат описывает неудачу значением. Частый случай «формат не распознан»
+ * представлен единственным экземпляром {@link #UNSUPPORTED} и не создаёт ни исключений, ни объектов.
+ * </p>
+ * Формат описывается расширением ({@link #getExtension()}), совпавшей сигнатурой и уверенностью
+ * ({@link #getConfidence()}), зависящей от того, сколько битов заголовка подтверждают формат.
+ * <p>
+ * Формат, определённый без сигнатуры эвристически ({@link ContentClassifier}), отличается
+ * признаком {@link #isHeuristic()}: у такого результата нет сигнатуры, а уверенность вычислена
+ * классификатором и не превышает {@link ContentClassifier#MAX_CONFIDENCE}.
+ * </p>
+ */
+public class DetectionResult {
+    // Количество совпавших битов, при котором случайное совпадение считается невозможным
+    private static final double CERTAIN_BITS = 32;
+
+    /** Формат файла не поддерживается или сигнатура не найдена. */
+    public static final DetectionResult UNSUPPORTED = new DetectionResult(null, "Unsupported file format");
+
+    private final Signature signature;
+    private final String failure;
+    // Расширение и уверенность эвристического результата
+    private final String guessedExtension;
+    private final double guessedConfidence;
+
+    private DetectionResult(Signature signature, String failure) {
+        this(signature, failure, null, 0);
+    }
+
+    private DetectionResult(Signature signature, String failure, String guessedExtension, double guessedConfidence) {
+        this.signature = signature;
+        this.failure = failure;
+        this.guessedExtension = guessedExtension;
+        this.guessedConfidence = guessedConfidence;
+    }
+
+    /**
+     * Создаёт результат успешного определения формата.
+     *
+     * @param signature Совпавшая сигнатура.
+     * @return Результат с найденной сигнатурой.
+     */
+    public static DetectionResult of(Signature signature) {
+        return new DetectionResult(signature, null);
+    }
+
+    /**
+     * Создаёт результат эвристического определения формата без сигнатуры.
+     *
+     * @param extension  Предполагаемое расширение.
+     * @param confidence Уверенность классификатора от 0 до 1.
+     * @return Эвристический результат.
+     */
+    public static DetectionResult guessed(String extension, double confidence) {
+        return new DetectionResult(null, null, extension, confidence);
+    }
+
+    /**
+     * Создаёт результат неудачного определения формата.
+     *
+     * @param reason Причина неудачи.
+     * @return Результат без сигнатуры.
+     */
+    public static DetectionResult failed(String reason) {
+        return new DetectionResult(null, reason);
+    }
+
+    /**
+     * @return true, если формат файла определён по сигнатуре или эвристически.
+     */
+    public boolean isDetected() {
+        return signature != null || guessedExtension != null;
+    }
+
+    /**
+     * @return true, если формат определён эвристически, без совпадения сигнатуры.
+     */
+    public boolean isHeuristic() {
+        return guessedExtension != null;
+    }
+
+    /**
+     * @return Совпавшая сигнатура или null, если формат не определён или определён эвристически.
+     */
+    public Signature getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return Расширение файла или null, если формат не определён.
+     */
+    public String getExtension() {
+        return signature == null ? guessedExtension : signature.getExtension();
+    }
+
+    /**
+     * Возвращает уверенность в определённом формате.
+     * <p>
+     * Для сигнатуры из 4 и более полностью сравниваемых байтов уверенность равна 1: вероятность
+     * случайного совпадения не превышает 2<sup>-32</sup>. Для более коротких или замаскированных
+     * сигнатур (например, двухбайтовой {@code BM} у bmp) уверенность пропорциональна числу
+     * сравниваемых битов. Для эвристического результата возвращается уверенность классификатора.
+     *
+     * @return Уверенность от 0 до 1; 0, если формат не определён.
+     */
+    public double getConfidence() {
+        if (signature == null) {
+            return guessedConfidence;
+        }
+        return Math.min(1, signature.getSignificantBits() / CERTAIN_BITS);
+    }
+
+    /**
+     * @return Причина неудачи или null, если формат определён.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        if (guessedExtension != null) {
+            return String.format("%s (heuristic, confidence %.2f)", guessedExtension, guessedConfidence);
+        }
+        return signature != null ? signature.toString() : failure;
+    }
+}
@@ -0,0 +1,116 @@
+package com.fileanalyzer;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекурсивное восстановление расширений для всех файлов дерева каталогов.
+ * <p>
+ * Обход выполняется потоково через {@link Files#walkFileTree}, а файлы передаются
+ * в пул рабочих потоков с ограниченной очередью. Когда очередь заполнена, задача
+ * выполняется в потоке обхода, что притормаживает обход и не даёт накопить
+ * в памяти список всех файлов дерева. Если задана часть дерева ({@link Shard}), обрабатываются
+ * только файлы этой части.
+ * </p>
+ */
+public class DirectoryRestorer {
+    // Количество задач в очереди на один рабочий поток
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+    private final FileExtensionRestorer restorer;
+    private final int threads;
+    private final Shard shard;
+
+    /**
+     * Конструктор класса DirectoryRestorer.
+     *
+     * @param restorer Общий для всех потоков восстановитель расширений.
+     * @param threads  Количество рабочих потоков.
+     */
+    public DirectoryRestorer(FileExtensionRestorer restorer, int threads) {
+        this(restorer, threads, null);
+    }
+
+    /**
+     * Конструктор класса DirectoryRestorer для обработки части дерева.
+     *
+     * @param restorer Общий для всех потоков восстановитель расширений.
+     * @param threads  Количество рабочих потоков.
+     * @param shard    Обрабатываемая часть дерева или null для всего дерева.
+     */
+    public DirectoryRestorer(FileExtensionRestorer restorer, int threads, Shard shard) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.restorer = restorer;
+        this.threads = threads;
+        this.shard = shard;
+    }
+
+    /**
+     * Восстанавливает расширения всех обычных файлов в дереве каталогов.
+     *
+     * @param root Корневой каталог.
+     * @return Статистика обработки.
+     * @throws IOException Если произошла ошибка при обходе корневого каталога.
+     */
+    public RestoreStatistics restoreTree(Path root) throws IOException {
+        RestoreStatistics statistics = new RestoreStatistics();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        long start = System.nanoTime();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && (shard == null || shard.contains(root, file))) {
+                        long size = attrs.size();
+                        executor.execute(() -> statistics.record(restorer.restoreExtension(file.toFile()), size));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (shard != null && !shard.contains(root, file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    AppLogger.warn("Failed to visit: {} ({})", file, e.getMessage());
+                    statistics.record(FileExtensionRestorer.Outcome.FAILED, 0);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+        String summary = statistics.summary(System.nanoTime() - start);
+        AppLogger.info(summary);
+        System.out.println(summary);
+        return statistics;
+    }
+
+    /**
+     * Ожидает завершения всех задач пула.
+     *
+     * @param executor Пул рабочих потоков.
+     */
+    private void awaitTermination(ThreadPoolExecutor executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                AppLogger.info("Waiting for {} queued files...", executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package com.fileanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Поиск файлов с одинаковым содержимым по ходу восстановления расширений.
+ * <p>
+ * Дубликаты ищутся в три ступени, и каждая следующая читает меньше файлов:
+ * <ol>
+ *   <li>файлы раскладываются по размеру — файл с уникальным размером дубликатом быть не может,
+ *   больше не читается, и от него в памяти остаётся только путь;</li>
+ *   <li>внутри корзины размера сравниваются хэши заголовка — диапазонов разметки
+ *   ({@link HeaderLayout}). Для файлов, которые открывал {@link FileAnalyzer}, хэш вычисляется из уже
+ *   прочитанного заголовка ({@link #wrap(HeaderReader)}), кроме первого файла каждого размера,
+ *   а остальные файлы читаются только в пределах разметки. Если файл целиком помещается в начальный диапазон, хэш заголовка — это хэш всего
+ *   содержимого;</li>
+ *   <li>полностью читаются только файлы, совпавшие по размеру и хэшу заголовка.</li>
+ * </ol>
+ * Хэши вычисляются параллельно: заголовки — в рабочих потоках восстановления, полные хэши —
+ * в пуле потоков {@link #findDuplicates(int)}. Используется SHA-256, поэтому совпадение хэшей
+ * считается совпадением содержимого. Жёсткие ссылки на один и тот же файл дубликатами не считаются.
+ * </p>
+ */
+public class DuplicateFinder {
+    // Алгоритм хэширования содержимого
+    private static final String ALGORITHM = "SHA-256";
+    // Размер буфера для чтения файла при вычислении полного хэша
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Количество повторов при совпадении случайного имени временной ссылки
+    private static final int MAX_TEMP_ATTEMPTS = 16;
+
+    // Буферы и экземпляры MessageDigest потоков: хэширование не выделяет памяти на каждый файл
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(DuplicateFinder::newDigest);
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private final HeaderLayout layout;
+    private final HeaderReader headerReader = new ChannelHeaderReader();
+    // Хэши заголовков, прочитанных анализатором, до регистрации файла через add
+    private final ConcurrentMap<String, byte[]> headerHashes = new ConcurrentHashMap<>();
+    // Первый файл каждого размера хранится одним путём: большинство размеров в дереве уникальны
+    private final ConcurrentMap<Long, Path> firstBySize = new ConcurrentHashMap<>();
+    // Остальные файлы размеров, встретившихся больше одного раза
+    private final ConcurrentMap<Long, Queue<Candidate>> sizes = new ConcurrentHashMap<>();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder reusedHeaders = new LongAdder();
+    private final LongAdder headerReads = new LongAdder();
+    private final LongAdder fullReads = new LongAdder();
+
+    /**
+     * Группа файлов с одинаковым содержимым.
+     */
+    public static class Group {
+        private final long size;
+        private final String hash;
+        private final List<Path> files;
+        // Время изменения файлов на момент регистрации, в порядке files
+        private final List<FileTime> modified;
+
+        Group(long size, String hash, List<Path> files, List<FileTime> modified) {
+            this.size = size;
+            this.hash = hash;
+            this.files = files;
+            this.modified = modified;
+        }
+
+        /**
+         * @return Размер каждого файла группы в байтах.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return Хэш SHA-256 содержимого в шестнадцатеричном виде.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return Файлы группы, отсортированные по пути; первый файл считается оригиналом.
+         */
+        public List<Path> getFiles() {
+            return files;
+        }
+    }
+
+    /**
+     * Файл-кандидат и известные о нём хэши.
+     */
+    private static class Candidate {
+        private final Path path;
+        private final long size;
+        private final FileTime modified;
+        private final Object fileKey;
+        private byte[] headerHash;
+        private byte[] fullHash;
+
+        Candidate(Path path, long size, FileTime modified, Object fileKey, byte[] headerHash) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.headerHash = headerHash;
+        }
+    }
+
+    /**
+     * Конструктор класса DuplicateFinder.
+     *
+     * @param layout Разметка заголовка, хэш которого используется для предварительного отбора;
+     *               обычно {@link FileTypeDatabase#getHeaderLayout()}.
+     */
+    public DuplicateFinder(HeaderLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Оборачивает стратегию чтения заголовков так, чтобы каждый прочитанный заголовок
+     * хэшировался в том же потоке, без повторного открытия файла.
+     *
+     * @param reader Исходная стратегия чтения заголовков.
+     * @return Стратегия чтения, сохраняющая хэши заголовков для {@link #add(File, File)}.
+     */
+    public HeaderReader wrap(HeaderReader reader) {
+        return (file, headerLayout) -> {
+            ByteBuffer header = reader.read(file, headerLayout);
+            // После перезагрузки базы разметка может измениться; такой хэш несопоставим с остальными
+            if (headerLayout.equals(layout)) {
+                headerHashes.put(file.getAbsolutePath(), hash(header.duplicate()));
+            }
+            return header;
+        };
+    }
+
+    /**
+     * Регистрирует обработанный файл.
+     * <p>
+     * Метод потокобезопасен. Пустые и недоступные файлы не регистрируются. От первого файла
+     * каждого размера запоминается только путь, поэтому память растёт с числом различных размеров,
+     * а не файлов; атрибуты первого файла читаются повторно, только если размер встретился снова.
+     *
+     * @param source Файл до восстановления расширения; по этому пути анализатор читал заголовок.
+     * @param target Файл после восстановления расширения (совпадает с {@code source}, если файл
+     *               не переименовывался).
+     */
+    public void add(File source, File target) {
+        byte[] headerHash = headerHashes.remove(source.getAbsolutePath());
+        Path path = target.getAbsoluteFile().toPath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            AppLogger.debug("Skipping file for duplicate search: {} ({})", path, e.getMessage());
+            return;
+        }
+        if (!attributes.isRegularFile() || attributes.size() == 0) {
+            return;
+        }
+        files.increment();
+        if (firstBySize.putIfAbsent(attributes.size(), path) == null) {
+            return;
+        }
+        if (headerHash != null) {
+            reusedHeaders.increment();
+        }
+        sizes.computeIfAbsent(attributes.size(), size -> new ConcurrentLinkedQueue<>())
+                .add(new Candidate(path, attributes.size(), attributes.lastModifiedTime(),
+                        attributes.fileKey(), headerHash));
+    }
+
+    /**
+     * Восстанавливает кандидата для первого файла размера, от которого сохранён только путь.
+     *
+     * @return Кандидат без хэша заголовка или null, если файл изменился или недоступен.
+     */
+    private static Candidate promote(Path path, long size) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile() || attributes.size() != size) {
+                return null;
+            }
+            return new Candidate(path, size, attributes.lastModifiedTime(), attributes.fileKey(), null);
+        } catch (IOException e) {
+            AppLogger.debug("Skipping file for duplicate search: {} ({})", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ищет дубликаты среди зарегистрированных файлов.
+     * <p>
+     * Вызывается после обработки всех файлов. Файлы, которые не удалось прочитать,
+     * исключаются из поиска.
+     *
+     * @param threads Количество потоков для хэширования.
+     * @return Группы дубликатов, отсортированные по убыванию занимаемого дубликатами места.
+     * @throws IOException Если поиск был прерван.
+     */
+    public List<Group> findDuplicates(int threads) throws IOException {
+        // Ступень 1: корзины размеров, в которых больше одного файла
+        List<Candidate> unhashed = new ArrayList<>();
+        List<List<Candidate>> buckets = new ArrayList<>();
+        for (Map.Entry<Long, Queue<Candidate>> entry : sizes.entrySet()) {
+            Queue<Candidate> queue = entry.getValue();
+            Candidate first = promote(firstBySize.get(entry.getKey()), entry.getKey());
+            if (first != null) {
+                queue.add(first);
+            }
+            List<Candidate> bucket = distinctFiles(queue);
+            if (bucket.size() < 2) {
+                continue;
+            }
+            buckets.add(bucket);
+            for (Candidate candidate : bucket) {
+                if (candidate.headerHash == null) {
+                    unhashed.add(candidate);
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Ступень 2: хэши заголовков для файлов, которые анализатор не открывал
+            invokeAll(executor, unhashed, candidate -> {
+                candidate.headerHash = hash(headerReader.read(candidate.path.toFile(), layout));
+                headerReads.increment();
+            });
+            List<Candidate> fullyRead = new ArrayList<>();
+            List<List<Candidate>> matches = new ArrayList<>();
+            for (List<Candidate> bucket : buckets) {
+                for (List<Candidate> match : split(bucket, candidate -> candidate.headerHash)) {
+                    matches.add(match);
+                    for (Candidate candidate : match) {
+                        if (candidate.size <= layout.getPrefixLength()) {
+                            // Начальный диапазон покрыл весь файл: хэш заголовка и есть хэш содержимого
+                            candidate.fullHash = candidate.headerHash;
+                        } else {
+                            fullyRead.add(candidate);
+                        }
+                    }
+                }
+            }
+
+            // Ступень 3: полные хэши только для совпавших по заголовку файлов
+            invokeAll(executor, fullyRead, candidate -> {
+                candidate.fullHash = hashFile(candidate.path);
+                fullReads.increment();
+            });
+            List<Group> groups = new ArrayList<>();
+            for (List<Candidate> match : matches) {
+                for (List<Candidate> group : split(match, candidate -> candidate.fullHash)) {
+                    group.sort((a, b) -> a.path.compareTo(b.path));
+                    List<Path> paths = new ArrayList<>(group.size());
+                    List<FileTime> modified = new ArrayList<>(group.size());
+                    for (Candidate candidate : group) {
+                        paths.add(candidate.path);
+                        modified.add(candidate.modified);
+                    }
+                    groups.add(new Group(group.get(0).size, toHex(group.get(0).fullHash), paths, modified));
+                }
+            }
+            groups.sort((a, b) -> Long.compare(wasted(b), wasted(a)));
+            return groups;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Заменяет дубликаты жёсткими ссылками на первый файл группы.
+     * <p>
+     * Ссылка создаётся под уникальным временным именем рядом с дубликатом и атомарно перемещается
+     * на его место, поэтому при сбое на месте дубликата остаётся либо он сам, либо ссылка, но не пустота.
+     * Перед заменой размер и время изменения оригинала и дубликата сверяются с зарегистрированными:
+     * файл, изменившийся после хэширования, не заменяется.
+     *
+     * @param groups Группы дубликатов, найденные {@link #findDuplicates(int)}.
+     * @return Количество заменённых файлов.
+     */
+    public int link(List<Group> groups) {
+        int linked = 0;
+        for (Group group : groups) {
+            Path original = group.files.get(0);
+            for (int i = 1; i < group.files.size(); i++) {
+                Path duplicate = group.files.get(i);
+                Path temp = null;
+                try {
+                    temp = createTempLink(original, duplicate);
+                    if (!isUnchanged(original, group.size, group.modified.get(0))
+                            || !isUnchanged(duplicate, group.size, group.modified.get(i))) {
+                        AppLogger.warn("File changed since duplicate search, not linking: {}", duplicate);
+                        continue;
+                    }
+                    try {
+                        Files.move(temp, duplicate, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, duplicate, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    temp = null;
+                    AppLogger.debug("Duplicate linked: {} -> {}", duplicate, original);
+                    linked++;
+                } catch (IOException | UnsupportedOperationException e) {
+                    AppLogger.warn("Failed to link duplicate: {} ({})", duplicate, e.getMessage());
+                    AppMetrics.recordFailure("link");
+                } finally {
+                    // Удаляется только ссылка, созданная этим вызовом
+                    if (temp != null) {
+                        deleteQuietly(temp);
+                    }
+                }
+            }
+        }
+        return linked;
+    }
+
+    /**
+     * Создаёт жёсткую ссылку на оригинал под свободным случайным именем рядом с дубликатом.
+     *
+     * @return Путь созданной ссылки.
+     */
+    private static Path createTempLink(Path original, Path duplicate) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Path temp = duplicate.resolveSibling(duplicate.getFileName() + ".dedup-"
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()));
+            try {
+                return Files.createLink(temp, original);
+            } catch (FileAlreadyExistsException e) {
+                if (attempt == MAX_TEMP_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что файл не изменился с момента регистрации.
+     */
+    private static boolean isUnchanged(Path path, long size, FileTime modified) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        return attributes.isRegularFile() && attributes.size() == size
+                && attributes.lastModifiedTime().equals(modified);
+    }
+
+    /**
+     * Выводит группы дубликатов.
+     *
+     * @param groups Группы дубликатов.
+     * @param out    Поток вывода.
+     */
+    public static void print(List<Group> groups, PrintStream out) {
+        for (Group group : groups) {
+            out.println("Duplicates (" + group.getFiles().size() + " x " + group.getSize() + " bytes, sha256 "
+                    + group.getHash() + "):");
+            for (Path file : group.getFiles()) {
+                out.println("  " + file);
+            }
+        }
+    }
+
+    /**
+     * Формирует итоговую строку по найденным дубликатам.
+     *
+     * @param groups Группы дубликатов.
+     * @return Строка с количеством групп, дубликатов, освобождаемого места и прочитанных файлов.
+     */
+    public String summary(List<Group> groups) {
+        long duplicates = 0;
+        long bytes = 0;
+        for (Group group : groups) {
+            duplicates += group.getFiles().size() - 1;
+            bytes += wasted(group);
+        }
+        return String.format("Duplicates: %d groups, %d duplicate files, %d bytes reclaimable "
+                        + "(%d files, %d header hashes reused, %d headers read, %d files fully read)",
+                groups.size(), duplicates, bytes, files.sum(), reusedHeaders.sum(), headerReads.sum(),
+                fullReads.sum());
+    }
+
+    /**
+     * @return Количество зарегистрированных файлов.
+     */
+    public long getFiles() {
+        return files.sum();
+    }
+
+    /**
+     * @return Количество файлов, хэш заголовка которых взят из чтения анализатора.
+     */
+    public long getReusedHeaders() {
+        return reusedHeaders.sum();
+    }
+
+    /**
+     * @return Количество файлов, прочитанных полностью для вычисления хэша.
+     */
+    public long getFullReads() {
+        return fullReads.sum();
+    }
+
+    private static long wasted(Group group) {
+        return group.getSize() * (group.getFiles().size() - 1);
+    }
+
+    /**
+     * Оставляет по одному пути на каждый физический файл: жёсткие ссылки уже не занимают места.
+     */
+    private static List<Candidate> distinctFiles(Queue<Candidate> queue) {
+        List<Candidate> result = new ArrayList<>(queue.size());
+        Set<Object> keys = new HashSet<>();
+        for (Candidate candidate : queue) {
+            if (candidate.fileKey == null || keys.add(candidate.fileKey)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Разбивает файлы на группы с одинаковым хэшем; файлы без хэша и группы из одного файла отбрасываются.
+     */
+    private static List<List<Candidate>> split(List<Candidate> candidates,
+                                               Function<Candidate, byte[]> hash) {
+        Map<String, List<Candidate>> groups = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            byte[] value = hash.apply(candidate);
+            if (value != null) {
+                groups.computeIfAbsent(toHex(value), key -> new ArrayList<>()).add(candidate);
+            }
+        }
+        List<List<Candidate>> result = new ArrayList<>();
+        for (List<Candidate> group : groups.values()) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Хэширует файлы в пуле потоков и дожидается завершения. Файл, который не удалось прочитать,
+     * остаётся без хэша.
+     */
+    private static void invokeAll(ExecutorService executor, List<Candidate> candidates, HashTask task)
+            throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            tasks.add(() -> {
+                try {
+                    task.run(candidate);
+                } catch (IOException e) {
+                    AppLogger.warn("Failed to hash file: {} ({})", candidate.path, e.getMessage());
+                    AppMetrics.recordFailure("hash");
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching for duplicates", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to search for duplicates", e.getCause());
+        }
+    }
+
+    /**
+     * Хэширует всё содержимое файла.
+     */
+    private static byte[] hashFile(Path path) throws IOException {
+        MessageDigest digest = digests.get();
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) >= 0) {
+                digest.update(buffer.flip());
+            }
+        } catch (IOException e) {
+            digest.reset();
+            throw e;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Хэширует оставшиеся байты буфера.
+     */
+    private static byte[] hash(ByteBuffer data) {
+        MessageDigest digest = digests.get();
+        digest.update(data);
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязан поддерживаться любой реализацией Java
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] value) {
+        StringBuilder hex = new StringBuilder(value.length * 2);
+        for (byte b : value) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            AppLogger.debug("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Хэширование одного файла-кандидата.
+     */
+    private interface HashTask {
+        void run(Candidate candidate) throws IOException;
+    }
+}
@@ -1,123 +1,415 @@
 package com.fileanalyzer;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
 
 /**
  * Класс для анализа файлов и определения их расширений на основе магических чисел.
+ * <p>
+ * База сигнатур может заменяться во время работы (см. {@link FileTypeDatabaseReloader}):
+ * анализатор берёт текущую базу один раз на файл, поэтому каждый файл анализируется
+ * целиком по одной версии базы.
+ * </p>
+ * При наличии {@link DetectionCache} файлы, не изменившиеся с прошлого анализа, не открываются:
+ * результат берётся из кэша по идентичности файла, размеру и времени модификации.
+ * <p>
+ * Данные, которых нет на диске (загружаемые файлы, записи архивов), анализируются методами
+ * {@link #detect(ByteBuffer)}, {@link #detect(byte[])} и {@link #detect(InputStream)}.
+ * </p>
+ * <p>
+ * Если ни одна сигнатура не совпала, прочитанный заголовок передаётся {@link ContentClassifier},
+ * который эвристически распознаёт текстовые форматы (CSV, JSON, XML, текст в UTF-8 и UTF-16).
+ * Такой результат помечен как эвристический ({@link DetectionResult#isHeuristic()}).
+ * Файлы без расширения и с расширением текстового формата ({@link ContentClassifier#FORMATS})
+ * при включённом классификаторе анализируются, даже если в базе сигнатур такого расширения нет.
+ * </p>
  */
 public class FileAnalyzer {
-    private final FileTypeDatabase database;
+    // Буфер потока для чтения заголовка из InputStream; растёт до размера окна заголовка базы
+    private static final ThreadLocal<byte[]> STREAM_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
+
+    private final Supplier<FileTypeDatabase> databaseSource;
+    private final HeaderReader headerReader;
+    private final DetectionCache cache;
+    private final ContentClassifier classifier;
 
     /**
-     * Конструктор класса FileAnalyzer.
+     * Конструктор класса FileAnalyzer. Заголовки читаются через {@link ChannelHeaderReader}.
      *
      * @param database База данных магических чисел и расширений.
      */
     public FileAnalyzer(FileTypeDatabase database) {
-        this.database = database;
+        this(database, new ChannelHeaderReader());
+    }
+
+    /**
+     * Конструктор класса FileAnalyzer.
+     *
+     * @param database     База данных магических чисел и расширений.
+     * @param headerReader Стратегия чтения заголовков файлов.
+     */
+    public FileAnalyzer(FileTypeDatabase database, HeaderReader headerReader) {
+        this(() -> database, headerReader);
+    }
+
+    /**
+     * Конструктор класса FileAnalyzer с заменяемой базой сигнатур.
+     *
+     * @param databaseSource Источник текущей базы сигнатур, например {@link FileTypeDatabaseReloader}.
+     * @param headerReader   Стратегия чтения заголовков файлов.
+     */
+    public FileAnalyzer(Supplier<FileTypeDatabase> databaseSource, HeaderReader headerReader) {
+        this(databaseSource, headerReader, null);
+    }
+
+    /**
+     * Конструктор класса FileAnalyzer с кэшем результатов.
+     *
+     * @param databaseSource Источник текущей базы сигнатур.
+     * @param headerReader   Стратегия чтения заголовков файлов.
+     * @param cache          Кэш результатов определения формата или null.
+     */
+    public FileAnalyzer(Supplier<FileTypeDatabase> databaseSource, HeaderReader headerReader, DetectionCache cache) {
+        this(databaseSource, headerReader, cache, new ContentClassifier());
     }
 
     /**
-     * Анализирует файл и возвращает его расширение на основе магического числа.
+     * Конструктор класса FileAnalyzer с эвристическим классификатором.
+     *
+     * @param databaseSource Источник текущей базы сигнатур.
+     * @param headerReader   Стратегия чтения заголовков файлов.
+     * @param cache          Кэш результатов определения формата или null.
+     * @param classifier     Классификатор данных без совпавшей сигнатуры или null, чтобы определять
+     *                       формат только по сигнатурам.
+     * @throws IllegalArgumentException Если кэш открыт для другого режима эвристик
+     *                                  ({@link DetectionCache#isHeuristics()}).
+     */
+    public FileAnalyzer(Supplier<FileTypeDatabase> databaseSource, HeaderReader headerReader, DetectionCache cache,
+                        ContentClassifier classifier) {
+        if (cache != null && cache.isHeuristics() != (classifier != null)) {
+            throw new IllegalArgumentException("Detection cache was opened with heuristics "
+                    + (cache.isHeuristics() ? "enabled" : "disabled") + " but the analyzer has them "
+                    + (classifier != null ? "enabled" : "disabled"));
+        }
+        this.databaseSource = databaseSource;
+        this.headerReader = headerReader;
+        this.cache = cache;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Анализирует файл и возвращает его расширение на основе магического числа, а если сигнатура
+     * не найдена — на основе эвристического анализа содержимого.
      * <p>
-     * Если формат файла не поддерживается, выбрасывает исключение {@link UnsupportedFileFormatException}.
+     * Если формат файла не определён, выбрасывает исключение {@link UnsupportedFileFormatException}.
+     * Для массовой обработки, где неподдерживаемые файлы — обычный случай, используйте
+     * {@link #detectFile(File)}.
      *
      * @param file Файл для анализа.
      * @return Расширение файла.
      * @throws UnsupportedFileFormatException Если формат файла не поддерживается или произошла ошибка при чтении файла.
      */
     public String analyzeFile(File file) throws UnsupportedFileFormatException {
-        // Проверяем расширение файла
-        String extension = getFileExtension(file);
-        if (extension == null || !isSupportedFormat(extension)) {
-            String errorMessage = "Unsupported file format: " + file.getName();
-            UnsupportedFileFormatException exception = new UnsupportedFileFormatException(errorMessage);
-            AppLogger.error(errorMessage, exception); // Логируем ошибку с исключением
-            throw exception; // Выбрасываем исключение
+        DetectionResult result = detectFile(file);
+        if (!result.isDetected()) {
+            // Неподдерживаемый формат — ожидаемый исход, трассировка стека не нужна
+            throw new UnsupportedFileFormatException(result.getFailure() + ": " + file.getName(), false);
         }
+        return result.getExtension();
+    }
 
+    /**
+     * Определяет формат файла по магическому числу, не выбрасывая исключений.
+     * <p>
+     * Как и {@link #analyzeFile(File)}, анализирует только файлы с поддерживаемым расширением.
+     * Если формат не поддерживается, возвращает {@link DetectionResult#UNSUPPORTED}.
+     *
+     * @param file Файл для анализа.
+     * @return Результат определения формата.
+     */
+    public DetectionResult detectFile(File file) {
+        Probe probe = probe(file);
+        if (probe.isResolved()) {
+            return probe.getResult();
+        }
         try {
-            // Получаем магическое число файла
-            String magicNumber = getMagicNumber(file);
-            AppLogger.info("Analyzing file: " + file.getName() + ", magic number: " + magicNumber);
-
-            // Ищем расширение по магическому числу
-            String detectedExtension = database.getExtensionByMagicNumber(magicNumber);
-
-            // Если расширение не найдено, выбрасываем исключение
-            if (detectedExtension == null) {
-                String errorMessage = "Unsupported file format: " + file.getName();
-                UnsupportedFileFormatException exception = new UnsupportedFileFormatException(errorMessage);
-                AppLogger.error(errorMessage, exception); // Логируем ошибку с исключением
-                throw exception; // Выбрасываем исключение
-            }
-
-            return detectedExtension;
+            // Читаем диапазоны заголовка, которые проверяют сигнатуры базы
+            long start = System.nanoTime();
+            ByteBuffer header = headerReader.read(file, probe.database.getHeaderLayout());
+            probe.nanos = System.nanoTime() - start;
+            AppMetrics.HEADER_READ.record(probe.nanos);
+            return complete(probe, header);
         } catch (IOException e) {
-            // Логируем ошибку и выбрасываем UnsupportedFileFormatException
-            AppLogger.warn("Failed to read file: " + file.getName());
-            throw new UnsupportedFileFormatException("Failed to read file: " + file.getName());
+            return fail(probe, e);
         }
     }
 
     /**
-     * Извлекает расширение файла из его имени.
+     * Определяет формат данных в памяти по магическому числу.
+     * <p>
+     * В отличие от {@link #detectFile(File)}, имя и расширение не проверяются, а кэш не используется.
+     * Данные анализируются начиная с текущей позиции буфера; позиция и предел не изменяются.
      *
-     * @param file Файл для анализа.
-     * @return Расширение файла (в нижнем регистре) или null, если расширение отсутствует.
+     * @param data Данные, начало которых соответствует началу файла.
+     * @return Результат определения формата: {@link DetectionResult#UNSUPPORTED}, если сигнатура не найдена.
      */
-    private String getFileExtension(File file) {
-        String name = file.getName();
-        int lastDotIndex = name.lastIndexOf('.');
-        if (lastDotIndex == -1) {
-            return null; // Нет расширения
+    public DetectionResult detect(ByteBuffer data) {
+        ByteBuffer header = data.slice();
+        return toResult(databaseSource.get().match(header), header);
+    }
+
+    /**
+     * Определяет формат данных в массиве по магическому числу.
+     *
+     * @param data Данные, начало которых соответствует началу файла.
+     * @return Результат определения формата.
+     * @see #detect(ByteBuffer)
+     */
+    public DetectionResult detect(byte[] data) {
+        return toResult(databaseSource.get().match(data, data.length), ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Определяет формат данных потока по магическому числу.
+     * <p>
+     * Из потока читается не больше байтов, чем нужно самой длинной сигнатуре базы
+     * ({@link FileTypeDatabase#getHeaderLength()}). Если поток поддерживает {@link InputStream#mark(int)},
+     * он возвращается к исходной позиции, и данные можно читать дальше с начала, например
+     * для распаковки записи архива. Иначе прочитанные байты из потока изымаются. Поток не закрывается.
+     *
+     * @param in Поток, текущая позиция которого соответствует началу файла.
+     * @return Результат определения формата.
+     * @throws IOException Если произошла ошибка при чтении потока.
+     */
+    public DetectionResult detect(InputStream in) throws IOException {
+        FileTypeDatabase database = databaseSource.get();
+        int length = database.getHeaderLength();
+        byte[] buffer = STREAM_BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new byte[length];
+            STREAM_BUFFER.set(buffer);
         }
-        return name.substring(lastDotIndex + 1).toLowerCase();
+        boolean rewind = in.markSupported();
+        if (rewind) {
+            in.mark(length);
+        }
+        int read = in.readNBytes(buffer, 0, length);
+        if (rewind) {
+            in.reset();
+        }
+        return toResult(database.match(buffer, read), ByteBuffer.wrap(buffer, 0, read));
+    }
+
+    /**
+     * @return Размер сплошного окна заголовка текущей базы: столько байтов с начала данных нужно
+     * самой дальней сигнатуре. Используется для данных без произвольного доступа (потоков).
+     */
+    public int getHeaderLength() {
+        return databaseSource.get().getHeaderLength();
+    }
+
+    private DetectionResult toResult(Signature signature, ByteBuffer header) {
+        return signature == null ? classify(header) : DetectionResult.of(signature);
     }
 
     /**
-     * Проверяет, поддерживается ли расширение файла.
+     * Эвристически определяет формат данных, для которых не нашлось сигнатуры.
      *
-     * @param extension Расширение файла.
-     * @return true, если расширение поддерживается, иначе false.
+     * @param header Заголовок данных.
+     * @return Эвристический результат или {@link DetectionResult#UNSUPPORTED}.
      */
-    private boolean isSupportedFormat(String extension) {
-        return database.isExtensionSupported(extension);
+    private DetectionResult classify(ByteBuffer header) {
+        if (classifier == null) {
+            return DetectionResult.UNSUPPORTED;
+        }
+        long start = System.nanoTime();
+        DetectionResult result = classifier.classify(header);
+        AppMetrics.HEURISTIC_MATCH.record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Первый этап определения формата: снимок базы, проверка расширения и поиск в кэше.
+     * <p>
+     * Вместе с {@link #readHeader(Probe)} и {@link #detect(Probe)} позволяет выполнять этапы
+     * {@link #detectFile(File)} в разных потоках (см. {@link RestorePipeline}).
+     *
+     * @param file Файл для анализа.
+     * @return Состояние анализа; если результат уже известен, {@link Probe#isResolved()} возвращает true.
+     */
+    public Probe probe(File file) {
+        // Один снимок базы на весь анализ файла
+        FileTypeDatabase database = databaseSource.get();
+
+        // Проверяем расширение файла; текстовые форматы и файлы без расширения проверяет классификатор
+        String extension = getFileExtension(file);
+        boolean classifiable = classifier != null
+                && (extension == null || ContentClassifier.FORMATS.contains(extension));
+        if (!classifiable && (extension == null || !database.isExtensionSupported(extension))) {
+            AppLogger.debug("Unsupported file extension: {}", file);
+            return new Probe(file, database, extension, null, DetectionResult.UNSUPPORTED);
+        }
+
+        // Неизменённый файл не открываем: достаточно stat и поиска в кэше
+        DetectionCache.FileIdentity identity = cache == null ? null : cache.identify(file);
+        DetectionResult cached = identity == null ? null : cache.get(identity, database);
+        if (cached != null) {
+            AppMetrics.recordDetection(cached);
+        }
+        return new Probe(file, database, extension, identity, cached);
     }
 
     /**
-     * Читает магическое число из файла.
+     * Второй этап определения формата: чтение заголовка.
      * <p>
-     * Магическое число — это первые 4 байта файла, представленные в виде шестнадцатеричной строки.
+     * Заголовок копируется из буфера {@link HeaderReader} в собственный буфер, поэтому
+     * следующий этап может выполняться в другом потоке. При ошибке чтения анализ завершается
+     * с результатом {@link DetectionResult#failed(String)}.
      *
-     * @param file Файл для чтения.
-     * @return Магическое число в виде шестнадцатеричной строки.
-     * @throws IOException Если произошла ошибка при чтении файла.
+     * @param probe Состояние анализа, полученное от {@link #probe(File)}.
      */
-    private String getMagicNumber(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] bytes = new byte[4];
-            int bytesRead = fis.read(bytes);
-            if (bytesRead != bytes.length) {
-                throw new IOException("Could not read enough bytes from the file.");
-            }
-            return bytesToHex(bytes);
+    public void readHeader(Probe probe) {
+        try {
+            long start = System.nanoTime();
+            ByteBuffer header = headerReader.read(probe.file, probe.database.getHeaderLayout());
+            probe.nanos = System.nanoTime() - start;
+            AppMetrics.HEADER_READ.record(probe.nanos);
+            ByteBuffer copy = ByteBuffer.allocate(header.remaining());
+            copy.put(header.duplicate()).flip();
+            probe.header = copy;
+        } catch (IOException e) {
+            fail(probe, e);
         }
     }
 
     /**
-     * Преобразует массив байтов в шестнадцатеричную строку.
+     * Третий этап определения формата: поиск сигнатуры в прочитанном заголовке.
      *
-     * @param bytes Массив байтов.
-     * @return Шестнадцатеричная строка.
+     * @param probe Состояние анализа после {@link #readHeader(Probe)}.
+     * @return Результат определения формата.
      */
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b));
+    public DetectionResult detect(Probe probe) {
+        if (probe.isResolved()) {
+            return probe.getResult();
+        }
+        if (probe.header == null) {
+            throw new IllegalStateException("Header has not been read: " + probe.file);
+        }
+        return complete(probe, probe.header);
+    }
+
+    /**
+     * Ищет самую длинную совпавшую сигнатуру, начиная с сигнатур заявленного расширения,
+     * и сохраняет результат в кэш.
+     *
+     * @param probe  Состояние анализа.
+     * @param header Заголовок файла.
+     * @return Результат определения формата.
+     */
+    private DetectionResult complete(Probe probe, ByteBuffer header) {
+        HeaderLayout layout = probe.database.getHeaderLayout();
+        long start = System.nanoTime();
+        Signature signature = probe.database.match(header, layout, probe.extension);
+        AppMetrics.SIGNATURE_MATCH.record(System.nanoTime() - start);
+
+        // Если сигнатура не найдена, формат определяется эвристически по началу файла,
+        // без дальних диапазонов разметки
+        DetectionResult result;
+        if (signature == null) {
+            ByteBuffer prefix = header.duplicate();
+            prefix.limit(Math.min(prefix.limit(), layout.getPrefixLength()));
+            result = classify(prefix);
+            AppLogger.debug("No matching signature: {}, heuristic result: {}", probe.file, result);
+        } else {
+            AppLogger.debug("Analyzing file: {}, signature: {}", probe.file, signature);
+            result = DetectionResult.of(signature);
+        }
+        if (probe.identity != null) {
+            cache.put(probe.identity, probe.database, result);
+        }
+        // Задержка по типу складывается из чтения заголовка и поиска; ожидание между этапами не учитывается
+        AppMetrics.recordDetection(result, probe.nanos + System.nanoTime() - start);
+        probe.result = result;
+        probe.header = null;
+        return result;
+    }
+
+    /**
+     * Завершает анализ ошибкой чтения файла.
+     *
+     * @param probe Состояние анализа.
+     * @param e     Ошибка чтения.
+     * @return Результат с описанием ошибки.
+     */
+    private DetectionResult fail(Probe probe, IOException e) {
+        AppLogger.warn("Failed to read file: {} ({})", probe.file.getName(), e.getMessage());
+        AppMetrics.recordFailure("read");
+        probe.result = DetectionResult.failed("Failed to read file");
+        return probe.result;
+    }
+
+    /**
+     * Извлекает расширение файла из его имени.
+     *
+     * @param file Файл для анализа.
+     * @return Расширение файла (в нижнем регистре) или null, если расширение отсутствует.
+     */
+    private String getFileExtension(File file) {
+        String name = file.getName();
+        int lastDotIndex = name.lastIndexOf('.');
+        if (lastDotIndex == -1) {
+            return null; // Нет расширения
+        }
+        return name.substring(lastDotIndex + 1).toLowerCase();
+    }
+
+    /**
+     * Состояние анализа одного файла между этапами определения формата.
+     * <p>
+     * Объект передаётся от этапа к этапу и в каждый момент используется только одним потоком.
+     * </p>
+     */
+    public static final class Probe {
+        private final File file;
+        private final FileTypeDatabase database;
+        private final String extension;
+        private final DetectionCache.FileIdentity identity;
+        private DetectionResult result;
+        private ByteBuffer header;
+        // Время чтения заголовка в наносекундах
+        private long nanos;
+
+        private Probe(File file, FileTypeDatabase database, String extension,
+                      DetectionCache.FileIdentity identity, DetectionResult result) {
+            this.file = file;
+            this.database = database;
+            this.extension = extension;
+            this.identity = identity;
+            this.result = result;
+        }
+
+        /**
+         * @return Анализируемый файл.
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return true, если результат уже известен и чтение заголовка не требуется.
+         */
+        public boolean isResolved() {
+            return result != null;
+        }
+
+        /**
+         * @return Результат определения формата или null, если анализ не завершён.
+         */
+        public DetectionResult getResult() {
+            return result;
         }
-        return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package com.fileanalyzer;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Класс для восстановления расширений файлов на основе анализа их содержимого.
@@ -8,9 +9,29 @@ import java.io.File;
  * Этот класс использует {@link FileAnalyzer} для определения правильного расширения файла
  * и переименовывает файл, добавляя это расширение, если оно отсутствует или не соответствует содержимому.
  * </p>
+ * В режиме плана ({@link RenamePlan.Writer}) файлы не переименовываются: переименования записываются
+ * в план, который затем применяется {@link RenamePlanApplier}.
+ * Если задан {@link DuplicateFinder}, каждый обработанный файл регистрируется в нём под итоговым именем.
  */
 public class FileExtensionRestorer {
+
+    /**
+     * Результат восстановления расширения одного файла.
+     */
+    public enum Outcome {
+        /** Файл переименован с правильным расширением. */
+        RESTORED,
+        /** Файл уже имеет правильное расширение. */
+        UNCHANGED,
+        /** Расширение определить или восстановить не удалось. */
+        FAILED,
+        /** Переименование записано в план, файл не изменён. */
+        PLANNED
+    }
+
     private final FileAnalyzer fileAnalyzer;
+    private final RenamePlan.Writer plan;
+    private final DuplicateFinder duplicates;
 
     /**
      * Конструктор класса FileExtensionRestorer.
@@ -18,7 +39,34 @@ public class FileExtensionRestorer {
      * @param fileAnalyzer Анализатор файлов, используемый для определения расширения.
      */
     public FileExtensionRestorer(FileAnalyzer fileAnalyzer) {
+        this(fileAnalyzer, null);
+    }
+
+    /**
+     * Конструктор класса FileExtensionRestorer для режима плана.
+     *
+     * @param fileAnalyzer Анализатор файлов, используемый для определения расширения.
+     * @param plan         План, в который записываются переименования, или null для немедленного
+     *                     переименования.
+     */
+    public FileExtensionRestorer(FileAnalyzer fileAnalyzer, RenamePlan.Writer plan) {
+        this(fileAnalyzer, plan, null);
+    }
+
+    /**
+     * Конструктор класса FileExtensionRestorer с поиском дубликатов.
+     *
+     * @param fileAnalyzer Анализатор файлов, используемый для определения расширения.
+     * @param plan         План, в который записываются переименования, или null для немедленного
+     *                     переименования.
+     * @param duplicates   Поиск дубликатов, в котором регистрируются обработанные файлы, или null.
+     *                     Анализатор должен читать заголовки через {@link DuplicateFinder#wrap(HeaderReader)},
+     *                     иначе хэши заголовков вычисляются повторным чтением файлов.
+     */
+    public FileExtensionRestorer(FileAnalyzer fileAnalyzer, RenamePlan.Writer plan, DuplicateFinder duplicates) {
         this.fileAnalyzer = fileAnalyzer;
+        this.plan = plan;
+        this.duplicates = duplicates;
     }
 
     /**
@@ -30,22 +78,100 @@ public class FileExtensionRestorer {
      *   <li>Переименовывает файл, добавляя правильное расширение, если оно отсутствует.</li>
      *   <li>Логирует результат операции (успех или ошибка).</li>
      *</ol>
+     * Метод потокобезопасен и может вызываться одновременно из нескольких потоков.
+     *
      * @param file Файл, для которого нужно восстановить расширение.
+     * @return Результат восстановления.
      */
-    public void restoreExtension(File file) {
+    public Outcome restoreExtension(File file) {
         try {
-            String extension = fileAnalyzer.analyzeFile(file);
-            String newFileName = file.getAbsolutePath() + "." + extension;
-            File newFile = new File(newFileName);
-            if (file.renameTo(newFile)) {
-                AppLogger.info("File extension restored: " + newFile.getName());
-                System.out.println("File extension restored: " + newFile.getName());
-            } else {
-                AppLogger.warn("Failed to restore extension for: " + file.getName());
-                System.out.println("Failed to restore extension for: " + file.getName());
-            }
+            return apply(file, fileAnalyzer.detectFile(file));
         } catch (Exception e) {
             ExceptionHandler.handleException(e, "Error restoring extension");
         }
+        return Outcome.FAILED;
+    }
+
+    /**
+     * Переименовывает файл по уже известному результату определения формата.
+     * <p>
+     * Используется этапом переименования {@link RestorePipeline}, где формат определяется
+     * в другом потоке.
+     *
+     * @param file   Файл, для которого нужно восстановить расширение.
+     * @param result Результат определения формата файла.
+     * @return Результат восстановления.
+     */
+    public Outcome apply(File file, DetectionResult result) {
+        Outcome outcome = rename(file, result);
+        AppMetrics.recordOutcome(outcome);
+        if (duplicates != null) {
+            duplicates.add(file, outcome == Outcome.RESTORED ? restoredFile(file, result) : file);
+        }
+        return outcome;
+    }
+
+    /**
+     * Переименовывает файл или записывает переименование в план.
+     *
+     * @param file   Файл, для которого нужно восстановить расширение.
+     * @param result Результат определения формата файла.
+     * @return Результат восстановления.
+     */
+    private Outcome rename(File file, DetectionResult result) {
+        if (!result.isDetected()) {
+            // Неподдерживаемый формат — штатный случай: без исключения, трассировки стека и вывода
+            // в консоль; промахи учитываются в RestoreStatistics и AppMetrics
+            AppLogger.debug("{}: {}", result.getFailure(), file);
+            return Outcome.FAILED;
+        }
+        String extension = result.getExtension();
+        if (file.getName().toLowerCase().endsWith("." + extension)) {
+            AppLogger.debug("File extension is already correct: {}", file);
+            return Outcome.UNCHANGED;
+        }
+        File newFile = restoredFile(file, result);
+        if (plan != null) {
+            return addToPlan(file, extension, newFile);
+        }
+        long start = System.nanoTime();
+        boolean renamed = file.renameTo(newFile);
+        AppMetrics.RENAME.record(System.nanoTime() - start);
+        if (renamed) {
+            AppLogger.info("File extension restored: {}", newFile.getName());
+            System.out.println("File extension restored: " + newFile.getName());
+            return Outcome.RESTORED;
+        }
+        AppLogger.warn("Failed to restore extension for: {}", file.getName());
+        AppMetrics.recordFailure("rename");
+        System.out.println("Failed to restore extension for: " + file.getName());
+        return Outcome.FAILED;
+    }
+
+    /**
+     * Возвращает файл с восстановленным расширением.
+     */
+    private static File restoredFile(File file, DetectionResult result) {
+        return new File(file.getAbsolutePath() + "." + result.getExtension());
+    }
+
+    /**
+     * Записывает переименование в план вместо его выполнения.
+     *
+     * @param file      Исходный файл.
+     * @param extension Определённое расширение.
+     * @param newFile   Файл после переименования.
+     * @return {@link Outcome#PLANNED} или {@link Outcome#FAILED}, если план не удалось записать.
+     */
+    private Outcome addToPlan(File file, String extension, File newFile) {
+        try {
+            plan.add(new RenamePlan.Entry(file.getAbsoluteFile().toPath(), extension, newFile.toPath()));
+            AppLogger.debug("Rename planned: {}", newFile);
+            return Outcome.PLANNED;
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error writing rename plan");
+            AppMetrics.recordFailure("plan");
+            return Outcome.FAILED;
+        }
     }
-}
\ No newline at end of file
+}
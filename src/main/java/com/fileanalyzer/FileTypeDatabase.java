@@ -1,16 +1,65 @@
 package com.fileanalyzer;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 /**
  * Класс для хранения информации о поддерживаемых форматах файлов.
+ * <p>
+ * Сигнатуры загружаются из текстового файла в формате {@code HEX[&MASK][@OFFSET]:расширение},
+ * по одной на строку (см. {@link Signature#parse(String, String)}). Пустые строки и строки,
+ * начинающиеся с {@code #}, пропускаются. После загрузки сигнатуры компилируются
+ * в {@link SignatureMatcher}.
+ * </p>
+ * При загрузке также строится обратный индекс от расширения к сигнатурам, что позволяет
+ * проверять поддержку расширения за O(1) и сначала сверять файл с сигнатурами заявленного
+ * расширения.
+ * <p>
+ * Кроме текстового формата поддерживается двоичный, заранее скомпилированный
+ * {@link SignatureDatabaseCompiler}: он содержит готовые массивы поиска и загружается без разбора
+ * текста (см. {@link BinarySignatureDatabase}).
+ * </p>
  */
 public class FileTypeDatabase {
-    private final Map<String, String> magicNumberToExtension = new HashMap<>();
+    /** Имя текстовой базы сигнатур в ресурсах. */
+    public static final String TEXT_RESOURCE = "magic_numbers.txt";
+    /** Имя двоичной базы сигнатур в ресурсах. */
+    public static final String BINARY_RESOURCE = "magic_numbers.bin";
+
+    private static final Signature[] NO_SIGNATURES = new Signature[0];
+
+    private final List<Signature> signatures;
+    private final SignatureMatcher matcher;
+    // Признак однозначности для каждой сигнатуры (см. buildExtensionIndex)
+    private final boolean[] unambiguous;
+    // Отпечаток набора сигнатур: совпадает у баз с одинаковыми сигнатурами в одинаковом порядке
+    private final long fingerprint;
+    // Обратный индекс: расширение -> сигнатуры этого расширения
+    private final Map<String, List<Signature>> signaturesByExtension = new HashMap<>();
+    // Сигнатуры расширения, совпадение с которыми однозначно определяет результат полного поиска
+    private final Map<String, Signature[]> unambiguousByExtension = new HashMap<>();
+    // Индексы сигнатур в списке signatures
+    private final Map<Signature, Integer> signatureIndex = new IdentityHashMap<>();
+
     /**
      * Конструктор, который загружает магические числа из файла.
      *
@@ -18,7 +67,103 @@ public class FileTypeDatabase {
      * @throws IOException Если произошла ошибка при чтении файла.
      */
     public FileTypeDatabase(String fileName) throws IOException {
-        loadMagicNumbersFromFile(fileName);
+        this(parseText(Files.readAllBytes(Paths.get(fileName))), null, null);
+    }
+
+    /**
+     * Создаёт базу из уже загруженных сигнатур.
+     *
+     * @param signatures  Сигнатуры.
+     * @param matcher     Скомпилированный поиск или null, чтобы скомпилировать его здесь.
+     * @param unambiguous Признаки однозначности сигнатур или null, чтобы вычислить их здесь.
+     */
+    FileTypeDatabase(List<Signature> signatures, SignatureMatcher matcher, boolean[] unambiguous) {
+        this.signatures = Collections.unmodifiableList(new ArrayList<>(signatures));
+        this.matcher = matcher != null ? matcher : new SignatureMatcher(this.signatures);
+        this.unambiguous = unambiguous != null ? unambiguous : findUnambiguous(this.signatures);
+        this.fingerprint = computeFingerprint(this.signatures);
+        buildExtensionIndex();
+    }
+
+    /**
+     * Загружает базу сигнатур из ресурсов приложения, не завися от рабочего каталога.
+     * <p>
+     * Сначала используется двоичная база {@value #BINARY_RESOURCE}. Если её нет, она повреждена
+     * или устарела (контрольная сумма исходного текста не совпадает с {@value #TEXT_RESOURCE}),
+     * база разбирается из текстового ресурса.
+     *
+     * @return База сигнатур.
+     * @throws IOException Если ни одна из баз не найдена или не может быть прочитана.
+     */
+    public static FileTypeDatabase loadDefault() throws IOException {
+        ClassLoader loader = FileTypeDatabase.class.getClassLoader();
+        URL text = loader.getResource(TEXT_RESOURCE);
+        URL binary = loader.getResource(BINARY_RESOURCE);
+        byte[] textBytes = text == null ? null : readAll(text);
+        if (binary != null) {
+            try {
+                ByteBuffer buffer = mapOrRead(binary);
+                if (textBytes == null || BinarySignatureDatabase.isCurrent(buffer, textBytes)) {
+                    return BinarySignatureDatabase.read(buffer);
+                }
+                AppLogger.warn("Binary signature database is stale, falling back to {}", TEXT_RESOURCE);
+            } catch (IOException e) {
+                AppLogger.warn("Failed to load binary signature database: {}", e.getMessage());
+            }
+        }
+        if (textBytes == null) {
+            throw new IOException("Signature database not found on classpath: " + TEXT_RESOURCE);
+        }
+        return new FileTypeDatabase(parseText(textBytes), null, null);
+    }
+
+    /**
+     * Загружает базу сигнатур из файла: двоичную, если имя оканчивается на {@code .bin},
+     * иначе текстовую.
+     *
+     * @param path Путь к файлу базы.
+     * @return База сигнатур.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    public static FileTypeDatabase load(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".bin")) {
+            // Файл читается, а не отображается: при усечении отображённого файла во время
+            // перезагрузки обращение к буферу завершилось бы ошибкой JVM, а не IOException
+            return BinarySignatureDatabase.read(ByteBuffer.wrap(Files.readAllBytes(path)));
+        }
+        return new FileTypeDatabase(path.toString());
+    }
+
+    /**
+     * Отображает файл в память только для чтения.
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Отображает ресурс в память, если он лежит в файловой системе, иначе читает его целиком.
+     */
+    private static ByteBuffer mapOrRead(URL resource) throws IOException {
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return map(Paths.get(resource.toURI()));
+            } catch (URISyntaxException e) {
+                // Читаем ресурс как поток ниже
+            }
+        }
+        return ByteBuffer.wrap(readAll(resource));
+    }
+
+    /**
+     * Читает ресурс целиком.
+     */
+    private static byte[] readAll(URL resource) throws IOException {
+        try (InputStream in = resource.openStream()) {
+            return in.readAllBytes();
+        }
     }
 
     /**
@@ -28,36 +173,262 @@ public class FileTypeDatabase {
      * @return true, если расширение поддерживается, иначе false.
      */
     public boolean isExtensionSupported(String extension) {
-        return magicNumberToExtension.containsValue(extension);
+        return signaturesByExtension.containsKey(extension);
     }
 
     /**
-     * Загружает магические числа из файла.
+     * Возвращает сигнатуры, соответствующие расширению.
      *
-     * @param fileName Имя файла с магическими числами.
-     * @throws IOException Если произошла ошибка при чтении файла.
+     * @param extension Расширение файла.
+     * @return Неизменяемый список сигнатур; пустой, если расширение не поддерживается.
+     */
+    public List<Signature> getSignatures(String extension) {
+        return signaturesByExtension.getOrDefault(extension, Collections.emptyList());
+    }
+
+    /**
+     * Строит обратный индекс от расширения к сигнатурам.
+     * <p>
+     * Для быстрой проверки заявленного расширения отбираются только однозначные сигнатуры:
+     * такие, с которыми не может одновременно совпасть другая сигнатура не меньшей длины.
+     * Совпадение с однозначной сигнатурой всегда даёт тот же результат, что и полный поиск.
+     */
+    private void buildExtensionIndex() {
+        Map<String, List<Signature>> unambiguousLists = new HashMap<>();
+        for (int i = 0; i < signatures.size(); i++) {
+            Signature signature = signatures.get(i);
+            signatureIndex.put(signature, i);
+            signaturesByExtension.computeIfAbsent(signature.getExtension(), k -> new ArrayList<>()).add(signature);
+            if (unambiguous[i]) {
+                unambiguousLists.computeIfAbsent(signature.getExtension(), k -> new ArrayList<>()).add(signature);
+            }
+        }
+        signaturesByExtension.replaceAll((extension, list) -> Collections.unmodifiableList(list));
+        unambiguousLists.forEach((extension, list) -> unambiguousByExtension.put(extension, list.toArray(NO_SIGNATURES)));
+    }
+
+    /**
+     * Для каждой сигнатуры проверяет, что ни одна другая сигнатура не меньшей длины
+     * не может совпасть вместе с ней.
+     *
+     * @param signatures Сигнатуры базы.
+     * @return Признаки однозначности сигнатур.
+     */
+    private static boolean[] findUnambiguous(List<Signature> signatures) {
+        boolean[] result = new boolean[signatures.size()];
+        for (int index = 0; index < signatures.size(); index++) {
+            Signature signature = signatures.get(index);
+            result[index] = true;
+            for (int i = 0; i < signatures.size(); i++) {
+                Signature other = signatures.get(i);
+                if (i != index && other.length() >= signature.length() && signature.isCompatibleWith(other)) {
+                    result[index] = false;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Вычисляет отпечаток набора сигнатур по их текстовой записи.
+     */
+    private static long computeFingerprint(List<Signature> signatures) {
+        CRC32 crc = new CRC32();
+        for (Signature signature : signatures) {
+            crc.update(signature.toString().getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Разбирает текстовую базу сигнатур.
+     *
+     * @param text Содержимое текстового файла с магическими числами в кодировке UTF-8.
+     * @return Сигнатуры в порядке следования строк.
+     * @throws IOException Если произошла ошибка при чтении.
      */
-    private void loadMagicNumbersFromFile(String fileName) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+    static List<Signature> parseText(byte[] text) throws IOException {
+        List<Signature> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
                 String[] parts = line.split(":");
                 if (parts.length == 2) {
                     String magicNumber = parts[0].trim();
                     String extension = parts[1].trim();
-                    magicNumberToExtension.put(magicNumber, extension);
+                    try {
+                        result.add(Signature.parse(magicNumber, extension));
+                    } catch (IllegalArgumentException e) {
+                        AppLogger.warn("Skipping invalid signature '{}': {}", line, e.getMessage());
+                    }
                 }
             }
         }
+        return result;
     }
 
     /**
      * Возвращает расширение файла по магическому числу.
+     * <p>
+     * Магическое число сопоставляется с сигнатурами как начало заголовка файла,
+     * поэтому выбирается самая длинная сигнатура, являющаяся его префиксом.
      *
-     * @param magicNumber Магическое число.
+     * @param magicNumber Магическое число в шестнадцатеричном виде.
      * @return Расширение файла или null, если магическое число не найдено.
      */
     public String getExtensionByMagicNumber(String magicNumber) {
-        return magicNumberToExtension.get(magicNumber);
+        byte[] header;
+        try {
+            header = Signature.hexToBytes(magicNumber);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Signature signature = match(header, header.length);
+        return signature == null ? null : signature.getExtension();
+    }
+
+    /**
+     * Ищет самую длинную сигнатуру, совпадающую с началом заголовка файла.
+     *
+     * @param header Заголовок файла.
+     * @param length Количество прочитанных байтов заголовка.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     */
+    public Signature match(byte[] header, int length) {
+        return match(ByteBuffer.wrap(header, 0, length).slice());
+    }
+
+    /**
+     * Ищет самую длинную сигнатуру, совпадающую с началом заголовка файла.
+     *
+     * @param header Заголовок файла: индекс 0 соответствует началу файла,
+     *               предел буфера — количеству прочитанных байтов.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     */
+    public Signature match(ByteBuffer header) {
+        return matcher.match(header);
+    }
+
+    /**
+     * Ищет сигнатуру заголовка, сначала проверяя сигнатуры заявленного расширения.
+     * <p>
+     * Если заголовок совпадает с однозначной сигнатурой заявленного расширения, она возвращается
+     * без полного поиска. Иначе выполняется обычный поиск самой длинной сигнатуры.
+     * Результат всегда совпадает с {@link #match(ByteBuffer)}.
+     *
+     * @param header           Заголовок файла.
+     * @param length           Количество прочитанных байтов заголовка.
+     * @param claimedExtension Расширение из имени файла или null.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     */
+    public Signature match(byte[] header, int length, String claimedExtension) {
+        return match(ByteBuffer.wrap(header, 0, length).slice(), claimedExtension);
+    }
+
+    /**
+     * Ищет сигнатуру заголовка, сначала проверяя сигнатуры заявленного расширения.
+     *
+     * @param header           Заголовок файла: индекс 0 соответствует началу файла,
+     *                         предел буфера — количеству прочитанных байтов.
+     * @param claimedExtension Расширение из имени файла или null.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     * @see #match(byte[], int, String)
+     */
+    public Signature match(ByteBuffer header, String claimedExtension) {
+        return match(header, null, claimedExtension);
+    }
+
+    /**
+     * Ищет сигнатуру заголовка, прочитанного по разметке {@link #getHeaderLayout()}, сначала проверяя
+     * сигнатуры заявленного расширения.
+     *
+     * @param header           Заголовок файла; предел буфера — количество прочитанных байтов.
+     * @param layout           Разметка, по которой прочитан заголовок, или null, если индекс буфера
+     *                         совпадает со смещением в файле.
+     * @param claimedExtension Расширение из имени файла или null.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     */
+    public Signature match(ByteBuffer header, HeaderLayout layout, String claimedExtension) {
+        if (claimedExtension != null) {
+            Signature[] candidates = unambiguousByExtension.get(claimedExtension);
+            if (candidates != null) {
+                for (Signature candidate : candidates) {
+                    int position = layout == null ? candidate.getOffset() : layout.position(candidate.getOffset());
+                    if (position >= 0 && candidate.matches(header, position)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return matcher.match(header, layout);
+    }
+
+    /**
+     * @return Размер окна заголовка, покрывающего все сигнатуры с учётом их смещений.
+     */
+    public int getHeaderLength() {
+        return matcher.getHeaderLength();
+    }
+
+    /**
+     * @return Разметка заголовка: диапазоны файла, которые нужно прочитать для поиска сигнатур.
+     */
+    public HeaderLayout getHeaderLayout() {
+        return matcher.getLayout();
+    }
+
+    /**
+     * @return Неизменяемый список загруженных сигнатур.
+     */
+    public List<Signature> getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * Возвращает индекс сигнатуры этой базы в {@link #getSignatures()}.
+     *
+     * @param signature Сигнатура, полученная от этой базы.
+     * @return Индекс сигнатуры или -1, если сигнатура принадлежит другой базе.
+     */
+    public int indexOf(Signature signature) {
+        Integer index = signatureIndex.get(signature);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Возвращает отпечаток набора сигнатур.
+     * <p>
+     * Индексы сигнатур в {@link #getSignatures()} совпадают у баз с одинаковым отпечатком,
+     * поэтому по нему можно проверить, что сохранённые результаты определения получены
+     * с той же базой.
+     *
+     * @return Отпечаток набора сигнатур.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return Скомпилированный поиск сигнатур.
+     */
+    SignatureMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Возвращает признак однозначности сигнатуры.
+     *
+     * @param index Индекс сигнатуры в {@link #getSignatures()}.
+     * @return true, если сигнатура используется для быстрой проверки заявленного расширения.
+     */
+    boolean isUnambiguous(int index) {
+        return unambiguous[index];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package com.fileanalyzer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Источник базы сигнатур с перезагрузкой при изменении файла базы.
+ * <p>
+ * Каждая загруженная {@link FileTypeDatabase} неизменяема. Новая база полностью строится
+ * в фоновом потоке и только затем публикуется записью в volatile-поле, поэтому
+ * {@link FileAnalyzer}, вызывающий {@link #get()}, никогда не блокируется и не видит
+ * частично загруженную базу. Если новая версия не загрузилась, продолжает работать прежняя.
+ * </p>
+ */
+public class FileTypeDatabaseReloader implements Supplier<FileTypeDatabase>, Closeable {
+    // Пауза после события изменения, чтобы дождаться окончания записи файла
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private final Path path;
+    private volatile FileTypeDatabase current;
+    private volatile long version;
+    private volatile long lastReloadNanos;
+    private volatile long failedReloads;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Загружает базу из файла.
+     *
+     * @param path Путь к текстовой или двоичной ({@code .bin}) базе.
+     * @throws IOException Если не удалось загрузить первую версию базы.
+     */
+    public FileTypeDatabaseReloader(Path path) throws IOException {
+        this.path = path.toAbsolutePath();
+        reload();
+    }
+
+    /**
+     * @return Текущая версия базы сигнатур.
+     */
+    @Override
+    public FileTypeDatabase get() {
+        return current;
+    }
+
+    /**
+     * Загружает базу из файла и публикует её как текущую.
+     * <p>
+     * Недописанный или повреждённый файл может вызвать при разборе не только {@link IOException},
+     * но и непроверяемое исключение; оно тоже считается неудачной загрузкой.
+     *
+     * @throws IOException Если не удалось загрузить базу; текущая база при этом не меняется.
+     */
+    public synchronized void reload() throws IOException {
+        long start = System.nanoTime();
+        FileTypeDatabase database;
+        try {
+            database = FileTypeDatabase.load(path);
+        } catch (IOException e) {
+            failedReloads++;
+            throw e;
+        } catch (RuntimeException e) {
+            failedReloads++;
+            throw new IOException("Malformed signature database " + path + ": " + e, e);
+        }
+        lastReloadNanos = System.nanoTime() - start;
+        current = database;
+        version++;
+        AppLogger.info("Signature database version {} loaded from {}", version, path);
+        AppLogger.info("Loaded {} signatures in {} us", database.getSignatures().size(),
+                TimeUnit.NANOSECONDS.toMicros(lastReloadNanos));
+    }
+
+    /**
+     * Запускает фоновое отслеживание изменений файла базы.
+     *
+     * @throws IOException Если не удалось подписаться на изменения каталога.
+     */
+    public synchronized void startWatching() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watch, "signature-database-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Цикл отслеживания: перезагружает базу при изменении или замене её файла.
+     */
+    private void watch() {
+        Path fileName = path.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= fileName.equals(event.context());
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // Редакторы часто пишут файл в несколько приёмов: ждём и сбрасываем накопившиеся события
+                Thread.sleep(DEBOUNCE_MILLIS);
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                try {
+                    reload();
+                } catch (IOException | RuntimeException e) {
+                    // Любая ошибка загрузки оставляет прежнюю версию и не останавливает отслеживание
+                    AppLogger.warn("Failed to reload signature database, keeping version {}: {}",
+                            version, e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Отслеживание остановлено
+        }
+    }
+
+    /**
+     * @return Номер текущей версии базы; увеличивается при каждой успешной загрузке.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Длительность последней успешной загрузки в наносекундах.
+     */
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
+    }
+
+    /**
+     * @return Количество неудачных попыток загрузки.
+     */
+    public long getFailedReloads() {
+        return failedReloads;
+    }
+
+    /**
+     * Останавливает отслеживание изменений.
+     *
+     * @throws IOException Если не удалось закрыть службу отслеживания.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.interrupt();
+            watchService.close();
+            watcher = null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.fileanalyzer;
+
+import java.util.Arrays;
+
+/**
+ * Разметка заголовка файла: диапазоны байтов, которые нужно прочитать для поиска сигнатур.
+ * <p>
+ * Сигнатура с большим смещением (например, {@code CD001} по смещению 32769 у ISO9660) делает
+ * окно заголовка длинным, хотя проверяет лишь несколько байтов. Поэтому окно делится на начальный
+ * диапазон и немногие дальние: {@link HeaderReader} читает каждый диапазон отдельным позиционным
+ * чтением и укладывает их в буфер заголовка подряд, начиная с позиции {@link #getPosition(int)}.
+ * Диапазоны, между которыми меньше {@link #MERGE_GAP} байтов, объединяются — промежуток между ними
+ * всё равно попадает в прочитанные страницы.
+ * </p>
+ * Начальный диапазон занимает не меньше {@link #MIN_PREFIX} байтов: с диска всё равно читается
+ * целая страница, а начало файла нужно эвристическому классификатору ({@link ContentClassifier})
+ * и поиску дубликатов ({@link DuplicateFinder}). Экземпляры неизменяемы.
+ */
+public final class HeaderLayout {
+    /** Наименьший размер начального диапазона. */
+    public static final int MIN_PREFIX = 4096;
+    /** Наибольший промежуток между диапазонами, которые читаются одним чтением. */
+    public static final int MERGE_GAP = 4096;
+
+    // Границы диапазонов в файле и их позиции в буфере заголовка
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] positions;
+    private final int length;
+
+    private HeaderLayout(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+        this.positions = new int[starts.length];
+        int position = 0;
+        for (int i = 0; i < starts.length; i++) {
+            positions[i] = position;
+            position += ends[i] - starts[i];
+        }
+        this.length = position;
+    }
+
+    /**
+     * Создаёт разметку из одного диапазона с начала файла.
+     *
+     * @param length Количество байтов с начала файла.
+     * @return Разметка, в которой индекс буфера совпадает со смещением в файле.
+     */
+    public static HeaderLayout contiguous(int length) {
+        return new HeaderLayout(new int[]{0}, new int[]{length});
+    }
+
+    /**
+     * Строит разметку, покрывающую участки файла, которые проверяют сигнатуры.
+     *
+     * @param spanStarts Начала участков (смещения в файле).
+     * @param spanEnds   Концы участков, не включая их.
+     * @return Разметка с начальным диапазоном не короче {@link #MIN_PREFIX}.
+     */
+    static HeaderLayout of(int[] spanStarts, int[] spanEnds) {
+        long[] spans = new long[spanStarts.length];
+        for (int i = 0; i < spans.length; i++) {
+            spans[i] = ((long) spanStarts[i] << 32) | (spanEnds[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(spans);
+
+        int[] starts = new int[spans.length + 1];
+        int[] ends = new int[spans.length + 1];
+        int count = 0;
+        ends[0] = MIN_PREFIX;
+        for (long span : spans) {
+            int start = (int) (span >>> 32);
+            int end = (int) span;
+            if (start <= ends[count] + MERGE_GAP) {
+                ends[count] = Math.max(ends[count], end);
+            } else {
+                count++;
+                starts[count] = start;
+                ends[count] = end;
+            }
+        }
+        return new HeaderLayout(Arrays.copyOf(starts, count + 1), Arrays.copyOf(ends, count + 1));
+    }
+
+    /**
+     * Возвращает позицию байта файла в буфере заголовка.
+     *
+     * @param offset Смещение в файле.
+     * @return Позиция в буфере или -1, если смещение не входит ни в один диапазон.
+     */
+    public int position(int offset) {
+        for (int i = 0; i < starts.length; i++) {
+            if (offset >= starts[i] && offset < ends[i]) {
+                return positions[i] + offset - starts[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Количество диапазонов.
+     */
+    public int getRangeCount() {
+        return starts.length;
+    }
+
+    /**
+     * @param range Номер диапазона.
+     * @return Смещение начала диапазона в файле.
+     */
+    public int getStart(int range) {
+        return starts[range];
+    }
+
+    /**
+     * @param range Номер диапазона.
+     * @return Смещение конца диапазона в файле, не включая его.
+     */
+    public int getEnd(int range) {
+        return ends[range];
+    }
+
+    /**
+     * @param range Номер диапазона.
+     * @return Позиция начала диапазона в буфере заголовка.
+     */
+    public int getPosition(int range) {
+        return positions[range];
+    }
+
+    /**
+     * @return Суммарная длина диапазонов, то есть размер буфера заголовка.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Длина начального диапазона: файл не длиннее неё читается целиком.
+     */
+    public int getPrefixLength() {
+        return ends[0];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HeaderLayout)) {
+            return false;
+        }
+        HeaderLayout other = (HeaderLayout) o;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < starts.length; i++) {
+            sb.append(i == 0 ? "" : "+").append('[').append(starts[i]).append(',').append(ends[i]).append(')');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.fileanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Стратегия чтения заголовка файла.
+ * <p>
+ * Заголовок читается по разметке ({@link HeaderLayout}): диапазоны файла укладываются в буфер
+ * подряд, начиная с позиций {@link HeaderLayout#getPosition(int)}. Предел буфера равен количеству
+ * прочитанных байтов; если файл закончился внутри диапазона, следующие диапазоны не читаются.
+ * Буфер может переиспользоваться: он действителен только до следующего вызова
+ * {@link #read(File, HeaderLayout)} в том же потоке.
+ * </p>
+ */
+public interface HeaderReader {
+
+    /**
+     * Читает диапазоны заголовка файла.
+     *
+     * @param file   Файл для чтения.
+     * @param layout Разметка заголовка.
+     * @return Буфер с заголовком файла.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    ByteBuffer read(File file, HeaderLayout layout) throws IOException;
+
+    /**
+     * Создаёт реализацию по имени режима.
+     *
+     * @param mode Режим чтения: {@code stream} или {@code channel}.
+     * @return Реализация чтения заголовков.
+     * @throws IllegalArgumentException Если режим неизвестен.
+     */
+    static HeaderReader forMode(String mode) {
+        switch (mode) {
+            case "stream":
+                return new StreamHeaderReader();
+            case "channel":
+                return new ChannelHeaderReader();
+            default:
+                throw new IllegalArgumentException("Unknown header reader: " + mode);
+        }
+    }
+}
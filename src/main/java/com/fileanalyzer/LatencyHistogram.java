@@ -0,0 +1,125 @@
+package com.fileanalyzer;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная гистограмма задержек без блокировок.
+ * <p>
+ * Значения в наносекундах раскладываются по корзинам степеней двойки: корзина {@code i}
+ * содержит значения из диапазона [2<sup>i-1</sup>, 2<sup>i</sup>). Каждая корзина — отдельный
+ * {@link LongAdder}, поэтому запись значения — это одна операция {@code numberOfLeadingZeros}
+ * и инкремент без общей точки конкуренции между потоками. Процентили оцениваются
+ * с точностью до корзины (не хуже чем в 2 раза), чего достаточно для поиска узких мест.
+ * </p>
+ */
+public class LatencyHistogram {
+    // Количество корзин: значения long в наносекундах
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Конструктор класса LatencyHistogram.
+     *
+     * @param name Имя гистограммы в отчётах, например {@code header_read}.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Учитывает одно значение.
+     *
+     * @param nanos Задержка в наносекундах; отрицательные значения считаются нулевыми.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        // Номер корзины — количество значащих битов: 0 для нуля, 1 для 1, 2 для 2-3 и т. д.
+        buckets[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return Имя гистограммы.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Количество значений.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return Сумма значений в наносекундах.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return Максимальное значение в наносекундах.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return Количество корзин.
+     */
+    public int getBucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * @param bucket Номер корзины.
+     * @return Количество значений в корзине.
+     */
+    public long getBucket(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * @param bucket Номер корзины.
+     * @return Верхняя граница корзины в наносекундах (включительно).
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * Оценивает процентиль по корзинам.
+     *
+     * @param quantile Квантиль от 0 до 1, например 0.99.
+     * @return Верхняя граница корзины, в которую попадает квантиль, но не больше максимума;
+     * 0, если значений нет.
+     */
+    public long getPercentile(double quantile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
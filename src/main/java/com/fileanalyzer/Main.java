@@ -2,33 +2,143 @@ package com.fileanalyzer;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Главный класс программы для восстановления расширений файлов.
  */
 public class Main {
+    // Подсказка по использованию программы
+    private static final String USAGE = "Usage: java -jar FileExtensionAnalyzer.jar [--threads N] "
+            + "[--header-reader stream|channel] [--db <magic_numbers.txt|.bin> [--watch-db]] "
+            + "[--cache <file> [--cache-size N]] [--pipeline [--io-concurrency N]] [--plan <plan_file>] "
+            + "[--no-heuristics] [--dedup [--hardlink]] "
+            + "[--shard k/N [--shard-by path|dir]] [--report <report_file>] "
+            + "[--metrics <file.json|file.prom> [--metrics-interval N]] <file_or_directory>\n"
+            + "       java -jar FileExtensionAnalyzer.jar [--threads N] [--batch-size N] --apply <plan_file>\n"
+            + "       java -jar FileExtensionAnalyzer.jar --inventory [--archive-depth N] <file_or_directory>\n"
+            + "       java -jar FileExtensionAnalyzer.jar --merge <merged_report> <shard_report>...";
+
     /**
-     * Точка входа в программу. Обрабатывает переданный файл и восстанавливает его расширение.
+     * Точка входа в программу. Обрабатывает переданный файл или рекурсивно все файлы каталога
+     * и восстанавливает их расширения.
      *
-     * @param args Аргументы командной строки. Ожидается один аргумент — путь к файлу.
+     * @param args Аргументы командной строки. Ожидается путь к файлу или каталогу,
+     *             необязательная опция {@code --threads N} для режима каталога и опция
+     *             {@code --header-reader} для выбора способа чтения заголовков. Опция {@code --db}
+     *             задаёт базу сигнатур вместо встроенной в ресурсы, а {@code --watch-db} включает
+     *             её перезагрузку при изменении файла. Опция {@code --cache} включает постоянный кэш
+     *             результатов определения формата. С опцией {@code --pipeline} каталог обрабатывается
+     *             конвейером с отдельными этапами чтения и переименования. Опция {@code --plan}
+     *             записывает переименования в план вместо их выполнения, а {@code --apply}
+     *             применяет ранее записанный план. Опция {@code --inventory} выводит опись файлов
+     *             и содержимого архивов без изменения файлов. Опция {@code --dedup} ищет файлы
+     *             с одинаковым содержимым, а {@code --hardlink} заменяет их жёсткими ссылками.
+     *             Опция {@code --shard k/N} обрабатывает только часть дерева, {@code --report}
+     *             записывает итоги в отчёт, а {@code --merge} объединяет отчёты частей. Опция
+     *             {@code --no-heuristics} отключает эвристическое определение текстовых форматов.
+     *             Опция {@code --metrics} периодически выгружает метрики в файл.
      */
     public static void main(String[] args) {
         AppLogger.info("Starting application...");
 
-        if (args.length == 0) {
-            AppLogger.warn("No file path provided.");
-            System.out.println("Usage: java -jar FileExtensionAnalyzer.jar <file_path>");
+        CommandLineOptions options;
+        HeaderReader headerReader;
+        Shard shard;
+        try {
+            options = CommandLineOptions.parse(args);
+            headerReader = HeaderReader.forMode(options.getHeaderReader());
+            shard = options.getShard() == null ? null : Shard.parse(options.getShard(), options.getShardBy());
+        } catch (IllegalArgumentException e) {
+            AppLogger.warn(e.getMessage());
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
             return;
         }
 
-        String filePath = args[0];
+        // Метрики доступны через JMX всегда, а в файл выгружаются с опцией --metrics
+        MetricsMBean.register();
+        MetricsReporter reporter = options.getMetrics() == null ? null
+                : new MetricsReporter(Paths.get(options.getMetrics()), options.getMetricsInterval());
+        try {
+            run(options, headerReader, shard);
+        } finally {
+            closeMetrics(reporter);
+        }
+    }
+
+    /**
+     * Выполняет выбранный режим работы.
+     *
+     * @param options      Параметры командной строки.
+     * @param headerReader Стратегия чтения заголовков.
+     * @param shard        Обрабатываемая часть дерева или null для всего дерева.
+     */
+    private static void run(CommandLineOptions options, HeaderReader headerReader, Shard shard) {
+        if (options.getApplyPlan() != null) {
+            applyPlan(options);
+            return;
+        }
+        if (options.getMerge() != null) {
+            mergeReports(options);
+            return;
+        }
+
+        String filePath = options.getPath();
         AppLogger.info("Processing file: " + filePath);
 
+        Supplier<FileTypeDatabase> database;
         try {
-            // Инициализация базы данных магических чисел
-            FileTypeDatabase database = new FileTypeDatabase("magic_numbers.txt"); // Передаем имя файла
-            FileAnalyzer analyzer = new FileAnalyzer(database);
-            FileExtensionRestorer restorer = new FileExtensionRestorer(analyzer);
+            // Инициализация базы данных магических чисел: из ресурсов приложения или из указанного файла
+            database = openDatabase(options);
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error initializing database");
+            return;
+        }
+        Supplier<FileTypeDatabase> currentDatabase = database;
+        AppMetrics.registerGauge("database_signatures", () -> currentDatabase.get().getSignatures().size());
+
+        // Поиск дубликатов хэширует заголовки, которые анализатор уже прочитал
+        DuplicateFinder duplicates = null;
+        HeaderReader analyzerReader = headerReader;
+        if (options.isDedup() && !options.isInventory()) {
+            duplicates = new DuplicateFinder(database.get().getHeaderLayout());
+            analyzerReader = duplicates.wrap(headerReader);
+            DuplicateFinder metricsDuplicates = duplicates;
+            AppMetrics.registerGauge("dedup_files", metricsDuplicates::getFiles);
+            AppMetrics.registerGauge("dedup_reused_headers", metricsDuplicates::getReusedHeaders);
+            AppMetrics.registerGauge("dedup_full_reads", metricsDuplicates::getFullReads);
+        }
+
+        DetectionCache cache = null;
+        RenamePlan.Writer plan = null;
+        try {
+            // Кэш результатов: при повторном обходе неизменённые файлы не открываются
+            if (options.getCache() != null) {
+                cache = new DetectionCache(Paths.get(options.getCache()), options.getCacheSize(),
+                        database.get().getFingerprint(), options.isHeuristics());
+                DetectionCache metricsCache = cache;
+                AppMetrics.registerGauge("cache_hits", metricsCache::getHits);
+                AppMetrics.registerGauge("cache_misses", metricsCache::getMisses);
+                AppMetrics.registerGauge("cache_entries", metricsCache::size);
+                AppMetrics.registerGauge("cache_stored", metricsCache::getStoredRecords);
+            }
+            // Без опции --no-heuristics файлы без совпавшей сигнатуры классифицируются по содержимому
+            FileAnalyzer analyzer = new FileAnalyzer(database, analyzerReader, cache,
+                    options.isHeuristics() ? new ContentClassifier() : null);
+            if (options.isInventory()) {
+                // Опись содержимого архивов без распаковки и переименования
+                new ArchiveInspector(analyzer, options.getArchiveDepth()).inspectTree(Paths.get(filePath), System.out);
+                return;
+            }
+            // В режиме плана файлы не переименовываются, переименования записываются в план
+            if (options.getPlan() != null) {
+                plan = new RenamePlan.Writer(Paths.get(options.getPlan()));
+            }
+            FileExtensionRestorer restorer = new FileExtensionRestorer(analyzer, plan, duplicates);
 
             File file = new File(filePath);
             if (!file.exists()) {
@@ -37,12 +147,174 @@ public class Main {
                 return;
             }
 
-            // Восстановление расширения файла
-            restorer.restoreExtension(file);
-        } catch (IOException e) {
-            ExceptionHandler.handleException(e, "Error initializing database");
+            long start = System.nanoTime();
+            RestoreStatistics statistics;
+            if (file.isDirectory()) {
+                // Рекурсивное восстановление расширений во всём дереве каталогов или в его части
+                if (options.isPipeline()) {
+                    statistics = new RestorePipeline(analyzer, restorer, options.getIoConcurrency(),
+                            options.getThreads(), shard).restoreTree(file.toPath());
+                } else {
+                    statistics = new DirectoryRestorer(restorer, options.getThreads(), shard)
+                            .restoreTree(file.toPath());
+                }
+            } else {
+                // Восстановление расширения файла; из нескольких частей файл обрабатывает ровно одна
+                statistics = new RestoreStatistics();
+                if (shard == null || shard.contains(file.toPath(), file.toPath())) {
+                    long size = file.length();
+                    statistics.record(restorer.restoreExtension(file), size);
+                }
+            }
+            if (options.getReport() != null) {
+                ShardReport.of(shard, file.toPath(), statistics, System.nanoTime() - start,
+                        AppMetrics.getDetected(), AppMetrics.getFailures()).write(Paths.get(options.getReport()));
+            }
+            if (duplicates != null) {
+                reportDuplicates(duplicates, options);
+            }
         } catch (Exception e) {
             ExceptionHandler.handleException(e, "Error processing file");
+        } finally {
+            closePlan(plan);
+            closeCache(cache);
+        }
+    }
+
+    /**
+     * Объединяет отчёты частей дерева в один отчёт и выводит его итоги.
+     *
+     * @param options Параметры командной строки.
+     */
+    private static void mergeReports(CommandLineOptions options) {
+        try {
+            List<ShardReport> reports = new ArrayList<>();
+            for (String input : options.getMergeInputs()) {
+                reports.add(ShardReport.read(Paths.get(input)));
+            }
+            ShardReport merged = ShardReport.merge(reports);
+            merged.write(Paths.get(options.getMerge()));
+            if (!merged.getMissingShards().isEmpty()) {
+                AppLogger.warn("Missing shard reports: {}", merged.getMissingShards());
+            }
+            AppLogger.info(merged.summary());
+            System.out.println(merged.summary());
+        } catch (IOException | IllegalArgumentException e) {
+            ExceptionHandler.handleException(e, "Error merging shard reports");
+        }
+    }
+
+    /**
+     * Ищет дубликаты среди обработанных файлов, выводит их и при необходимости заменяет жёсткими ссылками.
+     *
+     * @param duplicates Поиск дубликатов с зарегистрированными файлами.
+     * @param options    Параметры командной строки.
+     * @throws IOException Если поиск был прерван.
+     */
+    private static void reportDuplicates(DuplicateFinder duplicates, CommandLineOptions options) throws IOException {
+        List<DuplicateFinder.Group> groups = duplicates.findDuplicates(options.getThreads());
+        DuplicateFinder.print(groups, System.out);
+        if (options.isHardlink()) {
+            int linked = duplicates.link(groups);
+            AppLogger.info("Duplicates replaced with hard links: {}", linked);
+            System.out.println("Duplicates replaced with hard links: " + linked);
+        }
+        String summary = duplicates.summary(groups);
+        AppLogger.info(summary);
+        System.out.println(summary);
+    }
+
+    /**
+     * Останавливает выгрузку метрик и записывает итоговый отчёт.
+     *
+     * @param reporter Выгрузка метрик или null.
+     */
+    private static void closeMetrics(MetricsReporter reporter) {
+        if (reporter == null) {
+            return;
+        }
+        try {
+            reporter.close();
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error writing metrics");
+        }
+    }
+
+    /**
+     * Применяет план переименования, записанный ранее с опцией {@code --plan}.
+     *
+     * @param options Параметры командной строки.
+     */
+    private static void applyPlan(CommandLineOptions options) {
+        try {
+            new RenamePlanApplier(options.getBatchSize(), options.getThreads())
+                    .apply(Paths.get(options.getApplyPlan()));
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error applying rename plan");
+        }
+    }
+
+    /**
+     * Закрывает план переименования и сообщает количество записей.
+     *
+     * @param plan План переименования или null.
+     */
+    private static void closePlan(RenamePlan.Writer plan) {
+        if (plan == null) {
+            return;
+        }
+        try {
+            plan.close();
+            AppLogger.info("Rename plan written: {} entries", plan.getEntries());
+            System.out.println("Rename plan written: " + plan.getEntries() + " entries");
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error writing rename plan");
+        }
+    }
+
+    /**
+     * Сохраняет кэш результатов и выводит статистику попаданий.
+     *
+     * @param cache Кэш результатов или null.
+     */
+    private static void closeCache(DetectionCache cache) {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.close();
+            AppLogger.info(cache.summary());
+            System.out.println(cache.summary());
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error saving detection cache");
+        }
+    }
+
+    /**
+     * Загружает базу сигнатур.
+     * <p>
+     * Без опции {@code --db} используется база из ресурсов приложения. С опцией {@code --db}
+     * база загружается из файла, а с опцией {@code --watch-db} ещё и перезагружается
+     * при изменении файла.
+     *
+     * @param options Параметры командной строки.
+     * @return Источник текущей базы сигнатур.
+     * @throws IOException Если не удалось загрузить базу.
+     */
+    private static Supplier<FileTypeDatabase> openDatabase(CommandLineOptions options) throws IOException {
+        if (options.getDatabase() != null) {
+            FileTypeDatabaseReloader reloader = new FileTypeDatabaseReloader(Paths.get(options.getDatabase()));
+            if (options.isWatchDatabase()) {
+                reloader.startWatching();
+            }
+            AppMetrics.registerGauge("database_version", reloader::getVersion);
+            AppMetrics.registerGauge("database_failed_reloads", reloader::getFailedReloads);
+            return reloader;
         }
+        long start = System.nanoTime();
+        FileTypeDatabase database = FileTypeDatabase.loadDefault();
+        AppLogger.info("Loaded {} signatures in {} us", database.getSignatures().size(),
+                (System.nanoTime() - start) / 1000);
+        return () -> database;
     }
-}
\ No newline at end of file
+}
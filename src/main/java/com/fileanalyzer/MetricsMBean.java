@@ -0,0 +1,127 @@
+package com.fileanalyzer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Представление {@link AppMetrics} в JMX.
+ * <p>
+ * Набор типов файлов и показателей заранее неизвестен, поэтому MBean динамический: каждый счётчик,
+ * показатель и характеристика гистограммы ({@code header_read.p99_ns} и т. п.) — отдельный атрибут
+ * только для чтения. Значения вычисляются при обращении, рабочие потоки MBean не затрагивает.
+ * </p>
+ */
+public class MetricsMBean implements DynamicMBean {
+    /** Имя MBean в JMX. */
+    public static final String OBJECT_NAME = "com.fileanalyzer:type=Metrics";
+
+    /**
+     * Регистрирует MBean в платформенном MBeanServer. Повторная регистрация игнорируется.
+     */
+    public static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMBean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Уже зарегистрирован
+        } catch (JMException e) {
+            AppLogger.warn("Failed to register metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Снимает текущие значения всех метрик.
+     *
+     * @return Значения по именам атрибутов, отсортированные по имени.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        put(values, "detected.", AppMetrics.getDetected());
+        put(values, "outcome.", AppMetrics.getOutcomes());
+        put(values, "failure.", AppMetrics.getFailures());
+        put(values, "gauge.", AppMetrics.getGauges());
+        for (LatencyHistogram histogram : AppMetrics.histograms()) {
+            putHistogram(values, histogram);
+        }
+        for (LatencyHistogram histogram : AppMetrics.getDetectionLatency().values()) {
+            putHistogram(values, histogram);
+        }
+        return values;
+    }
+
+    private static void putHistogram(Map<String, Long> values, LatencyHistogram histogram) {
+        String name = histogram.getName();
+        values.put(name + ".count", histogram.getCount());
+        values.put(name + ".sum_ns", histogram.getSum());
+        values.put(name + ".p50_ns", histogram.getPercentile(0.5));
+        values.put(name + ".p99_ns", histogram.getPercentile(0.99));
+        values.put(name + ".max_ns", histogram.getMax());
+    }
+
+    private static void put(Map<String, Long> values, String prefix, Map<String, Long> source) {
+        for (Map.Entry<String, Long> value : source.entrySet()) {
+            values.put(prefix + value.getKey(), value.getValue());
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Long> values = snapshot();
+        AttributeList result = new AttributeList();
+        for (String attribute : attributes) {
+            Long value = values.get(attribute);
+            if (value != null) {
+                result.add(new Attribute(attribute, value));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("No operations: " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : snapshot().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "File analyzer metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+}
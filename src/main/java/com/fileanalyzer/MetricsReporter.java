@@ -0,0 +1,225 @@
+package com.fileanalyzer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодическая выгрузка {@link AppMetrics} в локальный файл.
+ * <p>
+ * Формат выбирается по имени файла: {@code .json} — JSON, иначе текстовый формат Prometheus
+ * (подходит для node_exporter textfile collector). Файл перезаписывается атомарно через уникальный
+ * временный файл, поэтому читатель никогда не видит частично записанный отчёт. Выгрузка выполняется
+ * в отдельном потоке и не затрагивает рабочие потоки; при закрытии записывается итоговый отчёт.
+ * </p>
+ */
+public class MetricsReporter implements Closeable {
+    // Префикс имён метрик Prometheus
+    private static final String PREFIX = "fileanalyzer_";
+
+    private final Path file;
+    private final boolean json;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Запускает периодическую выгрузку.
+     *
+     * @param file            Файл отчёта.
+     * @param intervalSeconds Период выгрузки в секундах.
+     */
+    public MetricsReporter(Path file, long intervalSeconds) {
+        this.file = file;
+        this.json = file.getFileName().toString().toLowerCase().endsWith(".json");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::dumpQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Записывает текущий отчёт в файл.
+     *
+     * @throws IOException Если файл не удалось записать.
+     */
+    public void dump() throws IOException {
+        String report = json ? toJson() : toPrometheus();
+        // Уникальное имя: одновременные выгрузки не пишут в один временный файл
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName() + ".", ".tmp");
+        try {
+            Files.write(temp, report.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (IOException e) {
+            AppLogger.warn("Failed to write metrics: {} ({})", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает выгрузку и записывает итоговый отчёт.
+     *
+     * @throws IOException Если итоговый отчёт не удалось записать.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        try {
+            // Итоговый отчёт не должен перезаписаться выгрузкой, которая ещё выполняется
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dump();
+    }
+
+    /**
+     * Формирует отчёт в текстовом формате Prometheus.
+     *
+     * @return Текст отчёта.
+     */
+    public static String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        counter(out, "files_detected_total", "type", AppMetrics.getDetected());
+        counter(out, "files_outcome_total", "outcome", AppMetrics.getOutcomes());
+        counter(out, "failures_total", "reason", AppMetrics.getFailures());
+        for (LatencyHistogram histogram : AppMetrics.histograms()) {
+            String name = PREFIX + histogram.getName() + "_seconds";
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            int last = lastNonEmptyBucket(histogram);
+            for (int i = 0; i <= last; i++) {
+                cumulative += histogram.getBucket(i);
+                out.append(name).append("_bucket{le=\"")
+                        .append(seconds(LatencyHistogram.getBucketUpperBound(i))).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+            out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        String detection = PREFIX + "detection_seconds";
+        out.append("# TYPE ").append(detection).append(" histogram\n");
+        for (Map.Entry<String, LatencyHistogram> entry : AppMetrics.getDetectionLatency().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            String label = "type=\"" + escape(entry.getKey()) + "\"";
+            long cumulative = 0;
+            int last = lastNonEmptyBucket(histogram);
+            for (int i = 0; i <= last; i++) {
+                cumulative += histogram.getBucket(i);
+                out.append(detection).append("_bucket{").append(label).append(",le=\"")
+                        .append(seconds(LatencyHistogram.getBucketUpperBound(i))).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            out.append(detection).append("_bucket{").append(label).append(",le=\"+Inf\"} ")
+                    .append(histogram.getCount()).append('\n');
+            out.append(detection).append("_sum{").append(label).append("} ")
+                    .append(seconds(histogram.getSum())).append('\n');
+            out.append(detection).append("_count{").append(label).append("} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+        for (Map.Entry<String, Long> gauge : AppMetrics.getGauges().entrySet()) {
+            String name = PREFIX + gauge.getKey();
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            out.append(name).append(' ').append(gauge.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Формирует отчёт в формате JSON.
+     *
+     * @return Текст отчёта.
+     */
+    public static String toJson() {
+        StringBuilder out = new StringBuilder(2048);
+        out.append("{\n  \"timestamp\": ").append(System.currentTimeMillis());
+        out.append(",\n  \"detected\": ");
+        jsonObject(out, AppMetrics.getDetected());
+        out.append(",\n  \"outcomes\": ");
+        jsonObject(out, AppMetrics.getOutcomes());
+        out.append(",\n  \"failures\": ");
+        jsonObject(out, AppMetrics.getFailures());
+        out.append(",\n  \"gauges\": ");
+        jsonObject(out, AppMetrics.getGauges());
+        out.append(",\n  \"latency_ns\": {");
+        boolean first = true;
+        for (LatencyHistogram histogram : AppMetrics.histograms()) {
+            out.append(first ? "\n" : ",\n").append("    \"").append(histogram.getName()).append("\": ");
+            jsonHistogram(out, histogram);
+            first = false;
+        }
+        out.append("\n  },\n  \"detection_latency_ns\": {");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : AppMetrics.getDetectionLatency().entrySet()) {
+            out.append(first ? "\n" : ",\n").append("    \"").append(escape(entry.getKey())).append("\": ");
+            jsonHistogram(out, entry.getValue());
+            first = false;
+        }
+        out.append("\n  }\n}\n");
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String metric, String label, Map<String, Long> values) {
+        String name = PREFIX + metric;
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            out.append(name).append('{').append(label).append("=\"").append(escape(value.getKey())).append("\"} ")
+                    .append(value.getValue()).append('\n');
+        }
+    }
+
+    private static void jsonObject(StringBuilder out, Map<String, Long> values) {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            out.append(first ? "" : ", ").append('"').append(escape(value.getKey())).append("\": ")
+                    .append(value.getValue());
+            first = false;
+        }
+        out.append('}');
+    }
+
+    private static void jsonHistogram(StringBuilder out, LatencyHistogram histogram) {
+        out.append("{\"count\": ").append(histogram.getCount())
+                .append(", \"sum\": ").append(histogram.getSum())
+                .append(", \"p50\": ").append(histogram.getPercentile(0.5))
+                .append(", \"p99\": ").append(histogram.getPercentile(0.99))
+                .append(", \"max\": ").append(histogram.getMax()).append('}');
+    }
+
+    private static int lastNonEmptyBucket(LatencyHistogram histogram) {
+        for (int i = histogram.getBucketCount() - 1; i >= 0; i--) {
+            if (histogram.getBucket(i) > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    /**
+     * Экранирует кавычки и обратную косую черту; общие правила JSON и меток Prometheus.
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,231 @@
+package com.fileanalyzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * План переименования: результат прохода определения форматов без изменения файлов.
+ * <p>
+ * План — текстовый файл в UTF-8 с одной записью на строку в формате
+ * {@code исходный_путь<TAB>расширение<TAB>целевой_путь}. Строки, начинающиеся с {@code #},
+ * считаются комментариями. Символы табуляции, перевода строки и обратной косой черты в путях
+ * экранируются ({@code \t}, {@code \n}, {@code \r}, {@code \\}).
+ * </p>
+ * <p>
+ * План пишется потоково через {@link Writer} и применяется отдельно с помощью
+ * {@link RenamePlanApplier}, поэтому медленный проход определения форматов и быстрый проход
+ * переименования можно запускать и распараллеливать независимо.
+ * </p>
+ */
+public class RenamePlan {
+    // Заголовок файла плана
+    static final String HEADER = "# rename plan v1";
+
+    private RenamePlan() {
+    }
+
+    /**
+     * Одна запись плана.
+     */
+    public static final class Entry {
+        private final Path source;
+        private final String extension;
+        private final Path target;
+
+        /**
+         * Конструктор записи плана.
+         *
+         * @param source    Исходный путь файла.
+         * @param extension Определённое расширение.
+         * @param target    Путь после переименования.
+         */
+        public Entry(Path source, String extension, Path target) {
+            this.source = source;
+            this.extension = extension;
+            this.target = target;
+        }
+
+        /**
+         * @return Исходный путь файла.
+         */
+        public Path getSource() {
+            return source;
+        }
+
+        /**
+         * @return Определённое расширение.
+         */
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @return Путь после переименования.
+         */
+        public Path getTarget() {
+            return target;
+        }
+
+        @Override
+        public String toString() {
+            return escape(source.toString()) + '\t' + extension + '\t' + escape(target.toString());
+        }
+    }
+
+    /**
+     * Разбирает строку плана.
+     *
+     * @param line Строка плана.
+     * @return Запись плана или null, если строка пустая или является комментарием.
+     * @throws IOException Если строка имеет неверный формат.
+     */
+    public static Entry parse(String line) throws IOException {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 3 || fields[1].isEmpty()) {
+            throw new IOException("Invalid rename plan line: " + line);
+        }
+        return new Entry(Paths.get(unescape(fields[0])), fields[1], Paths.get(unescape(fields[2])));
+    }
+
+    /**
+     * Открывает план для чтения.
+     *
+     * @param plan Файл плана.
+     * @return Читатель строк плана; строки разбираются методом {@link #parse(String)}.
+     * @throws IOException Если файл не удалось открыть.
+     */
+    public static BufferedReader open(Path plan) throws IOException {
+        return Files.newBufferedReader(plan, StandardCharsets.UTF_8);
+    }
+
+    static String escape(String value) {
+        StringBuilder result = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\\':
+                    replacement = "\\\\";
+                    break;
+                case '\t':
+                    replacement = "\\t";
+                    break;
+                case '\n':
+                    replacement = "\\n";
+                    break;
+                case '\r':
+                    replacement = "\\r";
+                    break;
+                default:
+                    replacement = null;
+                    break;
+            }
+            if (replacement != null && result == null) {
+                // Копируем строку только при наличии специальных символов
+                result = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (result != null) {
+                if (replacement != null) {
+                    result.append(replacement);
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result == null ? value : result.toString();
+    }
+
+    static String unescape(String value) throws IOException {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (++i == value.length()) {
+                throw new IOException("Dangling escape in rename plan: " + value);
+            }
+            switch (value.charAt(i)) {
+                case '\\':
+                    result.append('\\');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                default:
+                    throw new IOException("Invalid escape in rename plan: " + value);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Потоковая запись плана.
+     * <p>
+     * Метод {@link #add(Entry)} потокобезопасен, поэтому план может заполняться рабочими
+     * потоками {@link DirectoryRestorer} и {@link RestorePipeline}. Порядок записей
+     * соответствует порядку завершения анализа файлов.
+     * </p>
+     */
+    public static final class Writer implements Closeable {
+        private final BufferedWriter writer;
+        private long entries;
+
+        /**
+         * Создаёт файл плана, заменяя существующий. Контрольная точка применения прежнего плана
+         * удаляется: она относится к другим записям.
+         *
+         * @param plan Файл плана.
+         * @throws IOException Если файл не удалось создать.
+         */
+        public Writer(Path plan) throws IOException {
+            Files.deleteIfExists(RenamePlanApplier.checkpointFor(plan));
+            this.writer = Files.newBufferedWriter(plan, StandardCharsets.UTF_8);
+            writer.write(HEADER);
+            writer.newLine();
+        }
+
+        /**
+         * Добавляет запись в план.
+         *
+         * @param entry Запись плана.
+         * @throws IOException Если произошла ошибка записи.
+         */
+        public synchronized void add(Entry entry) throws IOException {
+            writer.write(entry.toString());
+            writer.newLine();
+            entries++;
+        }
+
+        /**
+         * @return Количество записанных записей.
+         */
+        public synchronized long getEntries() {
+            return entries;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+}
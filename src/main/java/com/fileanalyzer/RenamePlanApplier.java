@@ -0,0 +1,311 @@
+package com.fileanalyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Применение плана переименования ({@link RenamePlan}).
+ * <p>
+ * Записи плана выполняются пакетами. После каждого пакета номер последней выполненной записи
+ * сохраняется в файл контрольной точки ({@code <план>.checkpoint}) вместе с размером и временем
+ * изменения плана, поэтому прерванное применение продолжается с последнего пакета, а контрольная
+ * точка другой версии плана не учитывается. Повторное выполнение записи безопасно: если исходного
+ * файла нет, а целевой существует, запись считается уже применённой.
+ * </p>
+ * <p>
+ * Файл переименовывается созданием жёсткой ссылки с целевым именем и удалением исходного имени:
+ * в отличие от {@link Files#move}, создание ссылки атомарно завершается ошибкой, если имя занято.
+ * Тогда к имени добавляется суффикс {@code ~N} перед расширением ({@code photo~1.png}), поэтому
+ * существующие файлы не заменяются, даже если появились одновременно с применением плана.
+ * Гарантия действует только на файловых системах с жёсткими ссылками. На остальных используется
+ * {@link Files#move} без замены: существование цели проверяется непосредственно перед перемещением,
+ * но не атомарно с ним, поэтому файл, созданный в этот промежуток, может быть заменён.
+ * </p>
+ */
+public class RenamePlanApplier {
+    // Суффикс файла контрольной точки
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    // Максимальный номер суффикса при разрешении конфликтов имён
+    private static final int MAX_COLLISION_SUFFIX = 1000;
+
+    private final int batchSize;
+    private final int threads;
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Конструктор класса RenamePlanApplier.
+     *
+     * @param batchSize Количество записей в пакете между контрольными точками.
+     * @param threads   Количество потоков, выполняющих переименования внутри пакета.
+     */
+    public RenamePlanApplier(int batchSize, int threads) {
+        if (batchSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Batch size and thread count must be positive: "
+                    + batchSize + ", " + threads);
+        }
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Применяет план, продолжая с сохранённой контрольной точки.
+     *
+     * @param plan Файл плана.
+     * @return Статистика: переименованные файлы учитываются как {@code restored},
+     * уже применённые записи — как {@code unchanged}.
+     * @throws IOException Если план не удалось прочитать или сохранить контрольную точку.
+     */
+    public RestoreStatistics apply(Path plan) throws IOException {
+        RestoreStatistics statistics = new RestoreStatistics();
+        long completed = readCheckpoint(plan);
+        if (completed > 0) {
+            AppLogger.info("Resuming rename plan {} after {} entries", plan, completed);
+        }
+
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        long start = System.nanoTime();
+        try (BufferedReader reader = RenamePlan.open(plan)) {
+            List<RenamePlan.Entry> batch = new ArrayList<>(batchSize);
+            long index = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                RenamePlan.Entry entry = RenamePlan.parse(line);
+                if (entry == null || index++ < completed) {
+                    continue;
+                }
+                batch.add(entry);
+                if (batch.size() == batchSize) {
+                    completed += applyBatch(batch, executor, statistics);
+                    writeCheckpoint(plan, completed);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                completed += applyBatch(batch, executor, statistics);
+                writeCheckpoint(plan, completed);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        String summary = statistics.summary(System.nanoTime() - start);
+        AppLogger.info("{} ({} name collisions)", summary, collisions.sum());
+        System.out.println(summary + " (" + collisions.sum() + " name collisions)");
+        return statistics;
+    }
+
+    /**
+     * @return Количество записей, целевое имя которых пришлось изменить из-за конфликта.
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * Возвращает путь файла контрольной точки для плана.
+     *
+     * @param plan Файл плана.
+     * @return Путь файла контрольной точки.
+     */
+    public static Path checkpointFor(Path plan) {
+        return plan.resolveSibling(plan.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Выполняет пакет записей и дожидается их завершения.
+     *
+     * @return Количество выполненных записей.
+     */
+    private int applyBatch(List<RenamePlan.Entry> batch, ExecutorService executor, RestoreStatistics statistics)
+            throws IOException {
+        if (executor == null) {
+            for (RenamePlan.Entry entry : batch) {
+                applyEntry(entry, statistics);
+            }
+            return batch.size();
+        }
+        List<Future<?>> futures = new ArrayList<>(batch.size());
+        for (RenamePlan.Entry entry : batch) {
+            futures.add(executor.submit(() -> applyEntry(entry, statistics)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while applying rename plan", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to apply rename plan", e.getCause());
+        }
+        return batch.size();
+    }
+
+    /**
+     * Выполняет одну запись плана.
+     *
+     * @param entry      Запись плана.
+     * @param statistics Статистика применения.
+     */
+    private void applyEntry(RenamePlan.Entry entry, RestoreStatistics statistics) {
+        Path source = entry.getSource();
+        Path target = entry.getTarget();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            if (e instanceof NoSuchFileException && Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                // Запись уже применена, например до прерывания предыдущего запуска
+                AppLogger.debug("Rename already applied: {}", target);
+                statistics.record(FileExtensionRestorer.Outcome.UNCHANGED, 0);
+            } else {
+                AppLogger.warn("Source file is not available: {} ({})", source, e.getMessage());
+                statistics.record(FileExtensionRestorer.Outcome.FAILED, 0);
+            }
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            FileExtensionRestorer.Outcome outcome = moveToFreeName(source, target);
+            AppMetrics.RENAME.record(System.nanoTime() - start);
+            statistics.record(outcome, attributes.size());
+        } catch (IOException e) {
+            AppLogger.warn("Failed to rename {} ({})", source, e.getMessage());
+            AppMetrics.recordFailure("rename");
+            statistics.record(FileExtensionRestorer.Outcome.FAILED, attributes.size());
+        }
+    }
+
+    /**
+     * Переименовывает файл в целевое имя, а если оно занято — в первое свободное имя
+     * с суффиксом {@code ~N} перед расширением.
+     * <p>
+     * Если занятое имя — ссылка на тот же файл, предыдущий запуск прервался между созданием ссылки
+     * и удалением исходного имени: исходное имя удаляется, а запись считается уже применённой.
+     *
+     * @param source Исходный файл.
+     * @param target Целевой путь из плана.
+     * @return {@code RESTORED} или {@code UNCHANGED}, если запись была применена прерванным запуском.
+     * @throws IOException Если свободное имя не найдено или переименование не удалось.
+     */
+    private FileExtensionRestorer.Outcome moveToFreeName(Path source, Path target) throws IOException {
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 0; i <= MAX_COLLISION_SUFFIX; i++) {
+            Path candidate = i == 0 ? target : target.resolveSibling(base + "~" + i + extension);
+            try {
+                move(source, candidate);
+            } catch (FileAlreadyExistsException e) {
+                if (Files.isSameFile(source, candidate)) {
+                    Files.delete(source);
+                    AppLogger.debug("Rename already applied, removed source link: {}", source);
+                    return FileExtensionRestorer.Outcome.UNCHANGED;
+                }
+                continue;
+            }
+            if (i > 0) {
+                collisions.increment();
+                AppLogger.info("Target exists, renamed to: {}", candidate);
+            }
+            AppLogger.debug("File extension restored: {}", candidate);
+            return FileExtensionRestorer.Outcome.RESTORED;
+        }
+        throw new IOException("No free name for: " + target);
+    }
+
+    /**
+     * Переименовывает файл без замены существующего.
+     * <p>
+     * Ссылка и удаление исходного имени — два действия: при сбое между ними у файла остаются оба имени,
+     * что распознаёт {@link #moveToFreeName(Path, Path)} при повторном запуске.
+     *
+     * @throws FileAlreadyExistsException Если целевое имя занято.
+     */
+    private static void move(Path source, Path destination) throws IOException {
+        try {
+            Files.createLink(destination, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Жёсткие ссылки не поддерживаются (FAT, часть сетевых файловых систем). Files.move без
+            // REPLACE_EXISTING проверяет цель перед переименованием, но не атомарно с ним
+            Files.move(source, destination);
+            return;
+        }
+        try {
+            Files.delete(source);
+        } catch (IOException e) {
+            // Исходное имя осталось: убираем созданную ссылку, чтобы не получить два имени
+            Files.deleteIfExists(destination);
+            throw e;
+        }
+    }
+
+    /**
+     * Читает количество выполненных записей из файла контрольной точки.
+     *
+     * @param plan Файл плана.
+     * @return Количество выполненных записей или 0, если контрольной точки нет
+     * или она сохранена для другой версии плана.
+     * @throws IOException Если файл не удалось прочитать или он повреждён.
+     */
+    private static long readCheckpoint(Path plan) throws IOException {
+        Path checkpoint = checkpointFor(plan);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        String[] fields = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim().split(" ");
+        try {
+            long completed = Long.parseLong(fields[0]);
+            if (fields.length != 2 || !fields[1].equals(planIdentity(plan))) {
+                AppLogger.info("Ignoring checkpoint {}: it was saved for another version of the plan", checkpoint);
+                return 0;
+            }
+            return completed;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid rename plan checkpoint: " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Атомарно сохраняет количество выполненных записей вместе с идентичностью плана.
+     *
+     * @param plan      Файл плана.
+     * @param completed Количество выполненных записей.
+     * @throws IOException Если файл не удалось записать.
+     */
+    static void writeCheckpoint(Path plan, long completed) throws IOException {
+        Path checkpoint = checkpointFor(plan);
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.write(temp, (completed + " " + planIdentity(plan) + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Размер и время изменения плана в наносекундах, например {@code 1024@1700000000000000000}.
+     */
+    private static String planIdentity(Path plan) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(plan, BasicFileAttributes.class);
+        return attributes.size() + "@" + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,511 @@
+package com.fileanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Конвейер восстановления расширений с раздельными этапами stat, чтения, определения формата
+ * и переименования.
+ * <p>
+ * На сетевых и дисковых хранилищах обработка файла ограничена задержкой ввода-вывода,
+ * а не процессором. Конвейер разносит этапы {@link FileAnalyzer#detectFile(File)} и
+ * переименования по отдельным группам потоков, связанным ограниченными очередями:
+ * </p>
+ * <ol>
+ *   <li>{@code stat} — проверка расширения и поиск в {@link DetectionCache};</li>
+ *   <li>{@code read} — чтение заголовка;</li>
+ *   <li>{@code detect} — поиск сигнатуры (выполняется на платформенных потоках по числу ядер);</li>
+ *   <li>{@code rename} — переименование файла.</li>
+ * </ol>
+ * <p>
+ * Этапы ввода-вывода выполняются на виртуальных потоках, если JVM их поддерживает (Java 21+),
+ * поэтому одновременно могут выполняться тысячи чтений и переименований. На более старых JVM
+ * используются платформенные потоки. Заполненная очередь блокирует предыдущий этап, а очередь
+ * этапа {@code stat} — обход дерева, поэтому объём памяти ограничен независимо от размера дерева.
+ * Файлы, результат для которых известен после этапа {@code stat}, сразу передаются на переименование.
+ * </p>
+ * <p>
+ * Для каждого этапа собираются глубина очереди, время ожидания в очереди и время обработки
+ * (см. {@link StageMetrics}), по которым видно, какой этап ограничивает пропускную способность.
+ * Если задана часть дерева ({@link Shard}), в конвейер передаются только файлы этой части.
+ * </p>
+ */
+public class RestorePipeline {
+    // Ёмкость очереди этапа на один его рабочий поток
+    private static final int QUEUE_CAPACITY_PER_WORKER = 4;
+    // Одновременных операций на этапе ввода-вывода по умолчанию: на виртуальных потоках
+    // и на платформенных потоках в расчёте на ядро
+    private static final int VIRTUAL_IO_CONCURRENCY = 256;
+    private static final int PLATFORM_IO_CONCURRENCY_PER_CORE = 4;
+    // Период вывода состояния очередей в лог, в секундах
+    private static final long REPORT_INTERVAL_SECONDS = 5;
+
+    // Маркер конца потока файлов; этап ставит в очередь по одному маркеру на рабочий поток
+    private static final Item END = new Item(null, 0);
+
+    private final FileAnalyzer analyzer;
+    private final FileExtensionRestorer restorer;
+    private final int ioConcurrency;
+    private final int detectThreads;
+    private final Shard shard;
+    private volatile List<Stage> stages = new ArrayList<>();
+
+    /**
+     * Конструктор класса RestorePipeline.
+     *
+     * @param analyzer      Анализатор, этапы которого выполняет конвейер.
+     * @param restorer      Восстановитель расширений для этапа переименования.
+     * @param ioConcurrency Количество одновременных операций на каждом этапе ввода-вывода.
+     * @param detectThreads Количество потоков этапа определения формата.
+     */
+    public RestorePipeline(FileAnalyzer analyzer, FileExtensionRestorer restorer, int ioConcurrency,
+                           int detectThreads) {
+        this(analyzer, restorer, ioConcurrency, detectThreads, null);
+    }
+
+    /**
+     * Конструктор класса RestorePipeline для обработки части дерева.
+     *
+     * @param analyzer      Анализатор, этапы которого выполняет конвейер.
+     * @param restorer      Восстановитель расширений для этапа переименования.
+     * @param ioConcurrency Количество одновременных операций на каждом этапе ввода-вывода.
+     * @param detectThreads Количество потоков этапа определения формата.
+     * @param shard         Обрабатываемая часть дерева или null для всего дерева.
+     */
+    public RestorePipeline(FileAnalyzer analyzer, FileExtensionRestorer restorer, int ioConcurrency,
+                           int detectThreads, Shard shard) {
+        if (ioConcurrency < 1 || detectThreads < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + ioConcurrency + ", " + detectThreads);
+        }
+        this.analyzer = analyzer;
+        this.restorer = restorer;
+        this.ioConcurrency = ioConcurrency;
+        this.detectThreads = detectThreads;
+        this.shard = shard;
+    }
+
+    /**
+     * Восстанавливает расширения всех обычных файлов в дереве каталогов.
+     *
+     * @param root Корневой каталог.
+     * @return Статистика обработки; метрики этапов доступны через {@link #getStages()}.
+     * @throws IOException Если произошла ошибка при обходе корневого каталога.
+     */
+    public RestoreStatistics restoreTree(Path root) throws IOException {
+        RestoreStatistics statistics = new RestoreStatistics();
+        ThreadFactory ioThreads = ioThreadFactory();
+        ThreadFactory cpuThreads = platformThreadFactory("restore-detect-");
+
+        Stage rename = new Stage("rename", ioConcurrency, ioThreads, null, statistics);
+        Stage detect = new Stage("detect", detectThreads, cpuThreads, rename, statistics);
+        Stage read = new Stage("read", ioConcurrency, ioThreads, detect, statistics);
+        Stage stat = new Stage("stat", ioConcurrency, ioThreads, read, statistics);
+        stages = Arrays.asList(stat, read, detect, rename);
+
+        stat.start(item -> {
+            item.probe = analyzer.probe(item.path.toFile());
+            return item.probe.isResolved() ? rename : read;
+        });
+        read.start(item -> {
+            analyzer.readHeader(item.probe);
+            return item.probe.isResolved() ? rename : detect;
+        });
+        detect.start(item -> {
+            analyzer.detect(item.probe);
+            return rename;
+        });
+        rename.start(item -> {
+            statistics.record(restorer.apply(item.probe.getFile(), item.probe.getResult()), item.size);
+            return null;
+        });
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                platformThreadFactory("restore-report-"));
+        reporter.scheduleAtFixedRate(this::reportQueues, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        long start = System.nanoTime();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile() || (shard != null && !shard.contains(root, file))) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        // Блокируется при заполненной очереди: обход не опережает конвейер
+                        stat.submit(new Item(file, attrs.size()));
+                        return FileVisitResult.CONTINUE;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (shard != null && !shard.contains(root, file)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    AppLogger.warn("Failed to visit: {} ({})", file, e.getMessage());
+                    statistics.record(FileExtensionRestorer.Outcome.FAILED, 0);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            stat.finish();
+            rename.await();
+            reporter.shutdownNow();
+        }
+        String summary = statistics.summary(System.nanoTime() - start);
+        AppLogger.info(summary);
+        System.out.println(summary);
+        for (Stage stage : stages) {
+            AppLogger.info(stage.metrics.summary());
+            System.out.println(stage.metrics.summary());
+        }
+        return statistics;
+    }
+
+    /**
+     * @return Метрики этапов последнего запуска в порядке прохождения файлов.
+     */
+    public List<StageMetrics> getStages() {
+        List<StageMetrics> metrics = new ArrayList<>();
+        for (Stage stage : stages) {
+            metrics.add(stage.metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Выводит в лог текущую глубину очередей этапов.
+     */
+    private void reportQueues() {
+        StringBuilder line = new StringBuilder("Pipeline queues:");
+        for (Stage stage : stages) {
+            line.append(' ').append(stage.metrics.name).append('=')
+                    .append(stage.queue.size()).append('/').append(stage.metrics.capacity);
+        }
+        AppLogger.info(line.toString());
+    }
+
+    /**
+     * Возвращает число одновременных операций на этапе ввода-вывода по умолчанию.
+     * <p>
+     * Виртуальный поток, ожидающий ввода-вывода, почти ничего не стоит, а платформенный занимает
+     * стек и поток ОС, поэтому без виртуальных потоков число операций ограничивается небольшим
+     * кратным числа ядер.
+     * </p>
+     *
+     * @return 256 на виртуальных потоках, иначе четыре операции на ядро.
+     */
+    public static int defaultIoConcurrency() {
+        return virtualThreadFactory() != null
+                ? VIRTUAL_IO_CONCURRENCY
+                : PLATFORM_IO_CONCURRENCY_PER_CORE * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Создаёт фабрику потоков для этапов ввода-вывода.
+     * <p>
+     * Рабочие потоки этапов долгоживущие, так что буферы {@link ChannelHeaderReader}
+     * в {@link ThreadLocal} переиспользуются и с виртуальными потоками.
+     * </p>
+     *
+     * @return Фабрика виртуальных потоков или платформенных, если виртуальные недоступны.
+     */
+    static ThreadFactory ioThreadFactory() {
+        ThreadFactory factory = virtualThreadFactory();
+        if (factory != null) {
+            AppLogger.info("Pipeline I/O stages run on virtual threads");
+            return factory;
+        }
+        AppLogger.info("Virtual threads are not available, pipeline I/O stages run on platform threads");
+        return platformThreadFactory("restore-io-");
+    }
+
+    /**
+     * Создаёт фабрику виртуальных потоков.
+     * <p>
+     * Виртуальные потоки появились в Java 21, а проект собирается для более ранней версии,
+     * поэтому фабрика получается через рефлексию.
+     * </p>
+     *
+     * @return Фабрика виртуальных потоков или null, если JVM их не поддерживает.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "restore-io-", 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AppLogger.debug("Virtual threads are not available: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Создаёт фабрику платформенных потоков-демонов.
+     *
+     * @param prefix Префикс имени потока.
+     * @return Фабрика потоков.
+     */
+    private static ThreadFactory platformThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Обработчик элемента на этапе конвейера.
+     */
+    private interface Step {
+        /**
+         * @param item Обрабатываемый файл.
+         * @return Следующий этап или null, если обработка завершена.
+         */
+        Stage process(Item item);
+    }
+
+    /**
+     * Файл, проходящий через конвейер.
+     */
+    private static final class Item {
+        private final Path path;
+        private final long size;
+        private FileAnalyzer.Probe probe;
+        private long enqueuedAt;
+
+        private Item(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Этап конвейера: очередь и группа рабочих потоков.
+     * <p>
+     * Когда завершается последний рабочий поток этапа, маркеры конца передаются следующему этапу.
+     * Файлы, минующие этапы (например, найденные в кэше), попадают в очередь последующего этапа
+     * раньше этих маркеров, поэтому ни один файл не теряется.
+     * </p>
+     */
+    private static final class Stage {
+        private final BlockingQueue<Item> queue;
+        private final StageMetrics metrics;
+        private final int workers;
+        private final ThreadFactory threadFactory;
+        private final Stage next;
+        private final RestoreStatistics statistics;
+        private final List<Thread> threads = new ArrayList<>();
+        private final AtomicInteger running;
+
+        private Stage(String name, int workers, ThreadFactory threadFactory, Stage next,
+                      RestoreStatistics statistics) {
+            int capacity = workers * QUEUE_CAPACITY_PER_WORKER;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.metrics = new StageMetrics(name, capacity);
+            this.workers = workers;
+            this.threadFactory = threadFactory;
+            this.next = next;
+            this.statistics = statistics;
+            this.running = new AtomicInteger(workers);
+        }
+
+        private void start(Step step) {
+            for (int i = 0; i < workers; i++) {
+                Thread thread = threadFactory.newThread(() -> work(step));
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        private void submit(Item item) throws InterruptedException {
+            item.enqueuedAt = System.nanoTime();
+            queue.put(item);
+            metrics.queueDepth(queue.size());
+        }
+
+        private void work(Step step) {
+            try {
+                while (true) {
+                    Item item = queue.take();
+                    if (item == END) {
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    Stage target = null;
+                    try {
+                        target = step.process(item);
+                    } catch (RuntimeException e) {
+                        // Ошибка одного файла не останавливает конвейер
+                        ExceptionHandler.handleException(e, "Error in " + metrics.name + " stage");
+                        statistics.record(FileExtensionRestorer.Outcome.FAILED, item.size);
+                    }
+                    long end = System.nanoTime();
+                    metrics.processed(start - item.enqueuedAt, end - start);
+                    if (target != null) {
+                        target.submit(item);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (running.decrementAndGet() == 0 && next != null) {
+                    next.finish();
+                }
+            }
+        }
+
+        private void finish() {
+            try {
+                for (int i = 0; i < workers; i++) {
+                    queue.put(END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void await() {
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Метрики одного этапа конвейера.
+     * <p>
+     * Счётчики построены на {@link LongAdder} и {@link LongAccumulator}, поэтому рабочие потоки
+     * обновляют их без взаимных блокировок.
+     * </p>
+     */
+    public static final class StageMetrics {
+        private final String name;
+        private final int capacity;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder serviceNanos = new LongAdder();
+        private final LongAccumulator maxServiceNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder depthSamples = new LongAdder();
+        private final LongAdder depthTotal = new LongAdder();
+        private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+        private StageMetrics(String name, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+        }
+
+        private void queueDepth(int depth) {
+            depthSamples.increment();
+            depthTotal.add(depth);
+            maxDepth.accumulate(depth);
+        }
+
+        private void processed(long wait, long service) {
+            processed.increment();
+            waitNanos.add(wait);
+            serviceNanos.add(service);
+            maxServiceNanos.accumulate(service);
+        }
+
+        /**
+         * @return Имя этапа.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Количество файлов, обработанных этапом.
+         */
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        /**
+         * @return Ёмкость очереди этапа.
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return Максимальная наблюдавшаяся глубина очереди.
+         */
+        public long getMaxQueueDepth() {
+            return maxDepth.get();
+        }
+
+        /**
+         * @return Средняя глубина очереди в момент постановки файла.
+         */
+        public double getAverageQueueDepth() {
+            long samples = depthSamples.sum();
+            return samples == 0 ? 0 : depthTotal.sum() / (double) samples;
+        }
+
+        /**
+         * @return Среднее время ожидания файла в очереди, в наносекундах.
+         */
+        public long getAverageWaitNanos() {
+            long count = processed.sum();
+            return count == 0 ? 0 : waitNanos.sum() / count;
+        }
+
+        /**
+         * @return Среднее время обработки файла этапом, в наносекундах.
+         */
+        public long getAverageServiceNanos() {
+            long count = processed.sum();
+            return count == 0 ? 0 : serviceNanos.sum() / count;
+        }
+
+        /**
+         * @return Максимальное время обработки файла этапом, в наносекундах.
+         */
+        public long getMaxServiceNanos() {
+            return maxServiceNanos.get();
+        }
+
+        /**
+         * Формирует отчёт по этапу.
+         *
+         * @return Строка отчёта.
+         */
+        public String summary() {
+            return String.format("Stage %-6s: %d files, queue avg %.1f max %d/%d, wait avg %.3f ms, "
+                            + "service avg %.3f ms max %.3f ms",
+                    name, getProcessed(), getAverageQueueDepth(), getMaxQueueDepth(), capacity,
+                    getAverageWaitNanos() / 1e6, getAverageServiceNanos() / 1e6, getMaxServiceNanos() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.fileanalyzer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная статистика пакетного восстановления расширений.
+ * <p>
+ * Счётчики построены на {@link LongAdder}, поэтому рабочие потоки могут обновлять их
+ * без взаимных блокировок.
+ * </p>
+ */
+public class RestoreStatistics {
+    private final LongAdder restored = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder planned = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Учитывает результат обработки одного файла.
+     *
+     * @param outcome Результат восстановления.
+     * @param size    Размер файла в байтах.
+     */
+    public void record(FileExtensionRestorer.Outcome outcome, long size) {
+        switch (outcome) {
+            case RESTORED:
+                restored.increment();
+                break;
+            case UNCHANGED:
+                unchanged.increment();
+                break;
+            case PLANNED:
+                planned.increment();
+                break;
+            default:
+                failed.increment();
+                break;
+        }
+        bytes.add(size);
+    }
+
+    /**
+     * Учитывает сразу несколько файлов с одинаковым результатом, например из отчёта другого процесса.
+     *
+     * @param outcome Результат восстановления.
+     * @param files   Количество файлов.
+     * @param size    Суммарный размер файлов в байтах.
+     */
+    public void add(FileExtensionRestorer.Outcome outcome, long files, long size) {
+        switch (outcome) {
+            case RESTORED:
+                restored.add(files);
+                break;
+            case UNCHANGED:
+                unchanged.add(files);
+                break;
+            case PLANNED:
+                planned.add(files);
+                break;
+            default:
+                failed.add(files);
+                break;
+        }
+        bytes.add(size);
+    }
+
+    /**
+     * @return Общее количество обработанных файлов.
+     */
+    public long getProcessed() {
+        return restored.sum() + unchanged.sum() + failed.sum() + planned.sum();
+    }
+
+    /**
+     * @return Количество файлов, получивших новое расширение.
+     */
+    public long getRestored() {
+        return restored.sum();
+    }
+
+    /**
+     * @return Количество файлов, расширение которых уже было верным.
+     */
+    public long getUnchanged() {
+        return unchanged.sum();
+    }
+
+    /**
+     * @return Количество файлов, которые не удалось обработать.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return Количество переименований, записанных в план.
+     */
+    public long getPlanned() {
+        return planned.sum();
+    }
+
+    /**
+     * @return Суммарный размер обработанных файлов в байтах.
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Формирует итоговый отчёт с пропускной способностью.
+     *
+     * @param elapsedNanos Время работы в наносекундах.
+     * @return Строка отчёта.
+     */
+    public String summary(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        long processed = getProcessed();
+        String plannedPart = getPlanned() == 0 ? "" : String.format(", %d planned", getPlanned());
+        return String.format("Processed %d files (%d restored, %d unchanged, %d failed%s) in %.2f s: "
+                        + "%.1f files/sec, %.2f MB/sec",
+                processed, getRestored(), getUnchanged(), getFailed(), plannedPart, seconds,
+                processed / seconds, getBytes() / seconds / (1024 * 1024));
+    }
+}
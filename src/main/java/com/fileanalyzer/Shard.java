@@ -0,0 +1,168 @@
+package com.fileanalyzer;
+
+import java.nio.file.Path;
+
+/**
+ * Часть дерева каталогов, обрабатываемая одним процессом при распределённом обходе.
+ * <p>
+ * Дерево делится на {@code N} частей без координации между процессами: каждый процесс обходит
+ * всё дерево, но обрабатывает только файлы своей части. Принадлежность файла определяется хэшем
+ * его пути относительно корня обхода, поэтому разбиение одинаково на всех машинах, даже если
+ * дерево смонтировано в разные каталоги. При разбиении по каталогам ({@link Partition#DIRECTORY})
+ * хэшируется путь родительского каталога, и все файлы одного каталога попадают в одну часть.
+ * </p>
+ * <p>
+ * Имя файла хэшируется только до первой точки: восстановление добавляет к имени расширение
+ * ({@code image.jpg} → {@code image.jpg.png}), и переименованный одним процессом файл не должен
+ * оказаться в части другого процесса, который ещё обходит этот каталог.
+ * </p>
+ */
+public class Shard {
+
+    /**
+     * Способ разбиения дерева.
+     */
+    public enum Partition {
+        /** По пути файла: самое равномерное распределение. */
+        PATH,
+        /** По каталогу файла: файлы одного каталога обрабатываются одним процессом. */
+        DIRECTORY
+    }
+
+    // Параметры 64-битного хэша FNV-1a
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int index;
+    private final int count;
+    private final Partition partition;
+
+    /**
+     * Конструктор класса Shard.
+     *
+     * @param index     Номер части, от 1 до {@code count}.
+     * @param count     Количество частей.
+     * @param partition Способ разбиения.
+     * @throws IllegalArgumentException Если номер или количество частей заданы неверно.
+     */
+    public Shard(int index, int count, Partition partition) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Invalid shard: " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.partition = partition;
+    }
+
+    /**
+     * Разбирает описание части в формате {@code k/N}.
+     *
+     * @param spec      Описание части, например {@code 2/4}.
+     * @param partition Способ разбиения: {@code path} или {@code dir}.
+     * @return Часть дерева.
+     * @throws IllegalArgumentException Если описание задано неверно.
+     */
+    public static Shard parse(String spec, String partition) {
+        int slash = spec.indexOf('/');
+        try {
+            if (slash > 0) {
+                return new Shard(Integer.parseInt(spec.substring(0, slash)),
+                        Integer.parseInt(spec.substring(slash + 1)), parsePartition(partition));
+            }
+        } catch (NumberFormatException ignored) {
+            // Сообщение об ошибке формируется ниже
+        }
+        throw new IllegalArgumentException("Shard must be k/N, for example 1/4: " + spec);
+    }
+
+    /**
+     * Разбирает способ разбиения.
+     *
+     * @param partition {@code path} или {@code dir}.
+     * @return Способ разбиения.
+     * @throws IllegalArgumentException Если способ неизвестен.
+     */
+    public static Partition parsePartition(String partition) {
+        switch (partition) {
+            case "path":
+                return Partition.PATH;
+            case "dir":
+                return Partition.DIRECTORY;
+            default:
+                throw new IllegalArgumentException("Unknown shard partition: " + partition);
+        }
+    }
+
+    /**
+     * Проверяет, относится ли файл к этой части.
+     *
+     * @param root Корень обхода.
+     * @param file Файл внутри корня.
+     * @return true, если файл обрабатывается этой частью.
+     */
+    public boolean contains(Path root, Path file) {
+        if (count == 1) {
+            return true;
+        }
+        Path relative = root.relativize(file);
+        long hash = partition == Partition.DIRECTORY ? hash(relative.getParent(), false) : hash(relative, true);
+        return Math.floorMod(hash, (long) count) == index - 1;
+    }
+
+    /**
+     * Хэширует относительный путь по его элементам, чтобы результат не зависел от разделителя
+     * каталогов платформы.
+     *
+     * @param relative Путь относительно корня или null для самого корня.
+     * @param fileName true, если последний элемент — имя файла, которое хэшируется до первой точки.
+     */
+    private static long hash(Path relative, boolean fileName) {
+        long hash = FNV_OFFSET;
+        if (relative == null) {
+            return hash;
+        }
+        int last = relative.getNameCount() - 1;
+        for (int i = 0; i <= last; i++) {
+            if (i > 0) {
+                hash = (hash ^ '/') * FNV_PRIME;
+            }
+            String name = relative.getName(i).toString();
+            int end = name.length();
+            if (i == last && fileName) {
+                // Точка в начале имени скрытого файла не отделяет расширение
+                int dot = name.indexOf('.', 1);
+                end = dot < 0 ? end : dot;
+            }
+            for (int j = 0; j < end; j++) {
+                hash = (hash ^ name.charAt(j)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return Номер части, от 1 до {@link #getCount()}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Количество частей.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Способ разбиения.
+     */
+    public Partition getPartition() {
+        return partition;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,305 @@
+package com.fileanalyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Итоги обработки одной или нескольких частей дерева ({@link Shard}), пригодные для слияния.
+ * <p>
+ * Отчёт — текстовый файл в UTF-8 с заголовком {@code # shard report v1} и строками
+ * {@code ключ<TAB>значение}: номера обработанных частей, их общее количество, способ разбиения,
+ * корень обхода, время работы и счётчики — результаты восстановления, объём данных, количество
+ * файлов по определённому типу ({@code detected.png}) и сбоев по причине ({@code failure.read}).
+ * Все счётчики складываются, поэтому отчёты частей можно сливать в любом порядке и по нескольку
+ * раз: результат слияния — тоже отчёт того же формата.
+ * </p>
+ */
+public class ShardReport {
+    // Заголовок файла отчёта
+    static final String HEADER = "# shard report v1";
+
+    // Счётчики результатов восстановления
+    private static final String RESTORED = "restored";
+    private static final String UNCHANGED = "unchanged";
+    private static final String FAILED = "failed";
+    private static final String PLANNED = "planned";
+    private static final String BYTES = "bytes";
+    // Префиксы счётчиков по типу файла и по причине сбоя
+    private static final String DETECTED_PREFIX = "detected.";
+    private static final String FAILURE_PREFIX = "failure.";
+
+    private final SortedSet<Integer> shards;
+    private final int count;
+    private final Shard.Partition partition;
+    private final String root;
+    private final long elapsedNanos;
+    private final Map<String, Long> counters;
+
+    private ShardReport(SortedSet<Integer> shards, int count, Shard.Partition partition, String root,
+                        long elapsedNanos, Map<String, Long> counters) {
+        this.shards = shards;
+        this.count = count;
+        this.partition = partition;
+        this.root = root;
+        this.elapsedNanos = elapsedNanos;
+        this.counters = counters;
+    }
+
+    /**
+     * Формирует отчёт по результатам обработки части дерева.
+     *
+     * @param shard        Обработанная часть или null, если обрабатывалось всё дерево.
+     * @param root         Корень обхода.
+     * @param statistics   Статистика обработки.
+     * @param elapsedNanos Время обработки в наносекундах.
+     * @param detected     Количество файлов по определённому типу (см. {@link AppMetrics#getDetected()}).
+     * @param failures     Количество сбоев по причине (см. {@link AppMetrics#getFailures()}).
+     * @return Отчёт.
+     */
+    public static ShardReport of(Shard shard, Path root, RestoreStatistics statistics, long elapsedNanos,
+                                 Map<String, Long> detected, Map<String, Long> failures) {
+        SortedSet<Integer> shards = new TreeSet<>();
+        shards.add(shard == null ? 1 : shard.getIndex());
+        Map<String, Long> counters = new TreeMap<>();
+        counters.put(RESTORED, statistics.getRestored());
+        counters.put(UNCHANGED, statistics.getUnchanged());
+        counters.put(FAILED, statistics.getFailed());
+        counters.put(PLANNED, statistics.getPlanned());
+        counters.put(BYTES, statistics.getBytes());
+        for (Map.Entry<String, Long> value : detected.entrySet()) {
+            counters.put(DETECTED_PREFIX + value.getKey(), value.getValue());
+        }
+        for (Map.Entry<String, Long> value : failures.entrySet()) {
+            counters.put(FAILURE_PREFIX + value.getKey(), value.getValue());
+        }
+        return new ShardReport(shards, shard == null ? 1 : shard.getCount(),
+                shard == null ? Shard.Partition.PATH : shard.getPartition(),
+                root.toAbsolutePath().normalize().toString(), elapsedNanos, counters);
+    }
+
+    /**
+     * Сливает отчёты частей одного обхода.
+     * <p>
+     * Счётчики складываются, а временем работы считается наибольшее время среди отчётов,
+     * поскольку части обрабатываются одновременно. Если корни обхода различаются (например,
+     * дерево смонтировано на разных машинах в разные каталоги), в отчёт попадает корень первого
+     * отчёта, а расхождение записывается в лог.
+     *
+     * @param reports Отчёты частей; не пустой список.
+     * @return Объединённый отчёт.
+     * @throws IllegalArgumentException Если отчёты относятся к разным разбиениям или одна часть
+     *                                  встречается дважды.
+     */
+    public static ShardReport merge(List<ShardReport> reports) {
+        if (reports.isEmpty()) {
+            throw new IllegalArgumentException("No shard reports to merge");
+        }
+        ShardReport first = reports.get(0);
+        SortedSet<Integer> shards = new TreeSet<>();
+        Map<String, Long> counters = new TreeMap<>();
+        long elapsed = 0;
+        for (ShardReport report : reports) {
+            if (report.count != first.count || report.partition != first.partition) {
+                throw new IllegalArgumentException("Shard reports use different partitions: "
+                        + first.describe() + " and " + report.describe());
+            }
+            if (!report.root.equals(first.root)) {
+                AppLogger.warn("Shard reports have different roots: {} and {}", first.root, report.root);
+            }
+            for (int shard : report.shards) {
+                if (!shards.add(shard)) {
+                    throw new IllegalArgumentException("Shard " + shard + "/" + first.count + " is reported twice");
+                }
+            }
+            for (Map.Entry<String, Long> value : report.counters.entrySet()) {
+                counters.merge(value.getKey(), value.getValue(), Long::sum);
+            }
+            elapsed = Math.max(elapsed, report.elapsedNanos);
+        }
+        return new ShardReport(shards, first.count, first.partition, first.root, elapsed, counters);
+    }
+
+    /**
+     * Записывает отчёт атомарно через временный файл.
+     *
+     * @param file Файл отчёта.
+     * @throws IOException Если файл не удалось записать.
+     */
+    public void write(Path file) throws IOException {
+        StringBuilder out = new StringBuilder(1024);
+        out.append(HEADER).append('\n');
+        StringBuilder list = new StringBuilder();
+        for (int shard : shards) {
+            list.append(list.length() == 0 ? "" : ",").append(shard);
+        }
+        line(out, "shards", list.toString());
+        line(out, "count", Integer.toString(count));
+        line(out, "partition", partition.name().toLowerCase());
+        line(out, "root", RenamePlan.escape(root));
+        line(out, "elapsed_ns", Long.toString(elapsedNanos));
+        for (Map.Entry<String, Long> value : counters.entrySet()) {
+            line(out, RenamePlan.escape(value.getKey()), Long.toString(value.getValue()));
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, out.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает отчёт из файла.
+     *
+     * @param file Файл отчёта.
+     * @return Отчёт.
+     * @throws IOException Если файл не удалось прочитать или он не является отчётом.
+     */
+    public static ShardReport read(Path file) throws IOException {
+        SortedSet<Integer> shards = null;
+        int count = 0;
+        Shard.Partition partition = null;
+        String root = null;
+        long elapsed = 0;
+        Map<String, Long> counters = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new IOException("Not a shard report: " + file);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (tab < 0) {
+                    throw new IOException("Malformed shard report line in " + file + ": " + line);
+                }
+                String key = RenamePlan.unescape(line.substring(0, tab));
+                String value = line.substring(tab + 1);
+                switch (key) {
+                    case "shards":
+                        shards = new TreeSet<>();
+                        for (String shard : value.split(",")) {
+                            shards.add(Integer.parseInt(shard));
+                        }
+                        break;
+                    case "count":
+                        count = Integer.parseInt(value);
+                        break;
+                    case "partition":
+                        partition = Shard.Partition.valueOf(value.toUpperCase());
+                        break;
+                    case "root":
+                        root = RenamePlan.unescape(value);
+                        break;
+                    case "elapsed_ns":
+                        elapsed = Long.parseLong(value);
+                        break;
+                    default:
+                        counters.put(key, Long.parseLong(value));
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException и неизвестный способ разбиения
+            throw new IOException("Malformed shard report " + file + ": " + e.getMessage(), e);
+        }
+        if (shards == null || count < 1 || partition == null || root == null
+                || shards.first() < 1 || shards.last() > count) {
+            throw new IOException("Incomplete shard report: " + file);
+        }
+        return new ShardReport(shards, count, partition, root, elapsed, counters);
+    }
+
+    /**
+     * @return Номера частей, вошедших в отчёт.
+     */
+    public SortedSet<Integer> getShards() {
+        return Collections.unmodifiableSortedSet(shards);
+    }
+
+    /**
+     * @return Номера частей разбиения, которых нет в отчёте; пустой список, если отчёт полный.
+     */
+    public List<Integer> getMissingShards() {
+        List<Integer> missing = new ArrayList<>();
+        for (int shard = 1; shard <= count; shard++) {
+            if (!shards.contains(shard)) {
+                missing.add(shard);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @return Количество частей разбиения.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Корень обхода.
+     */
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * @return Время обработки в наносекундах.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return Все счётчики отчёта по именам.
+     */
+    public Map<String, Long> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * @return Статистика обработки, восстановленная из счётчиков отчёта.
+     */
+    public RestoreStatistics getStatistics() {
+        RestoreStatistics statistics = new RestoreStatistics();
+        statistics.add(FileExtensionRestorer.Outcome.RESTORED, counter(RESTORED), counter(BYTES));
+        statistics.add(FileExtensionRestorer.Outcome.UNCHANGED, counter(UNCHANGED), 0);
+        statistics.add(FileExtensionRestorer.Outcome.FAILED, counter(FAILED), 0);
+        statistics.add(FileExtensionRestorer.Outcome.PLANNED, counter(PLANNED), 0);
+        return statistics;
+    }
+
+    /**
+     * Формирует итоговую строку отчёта.
+     *
+     * @return Строка с номерами частей, статистикой обработки и пропускной способностью.
+     */
+    public String summary() {
+        String missing = getMissingShards().isEmpty() ? "" : ", missing " + getMissingShards();
+        return "Shards " + shards + " of " + count + " (" + partition.name().toLowerCase() + missing + "): "
+                + getStatistics().summary(elapsedNanos);
+    }
+
+    private long counter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    private String describe() {
+        return count + " shards by " + partition.name().toLowerCase();
+    }
+
+    private static void line(StringBuilder out, String key, String value) {
+        out.append(key).append('\t').append(value).append('\n');
+    }
+}
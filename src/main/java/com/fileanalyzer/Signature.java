@@ -0,0 +1,326 @@
+package com.fileanalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Сигнатура (магическое число) формата файла: последовательность байтов по заданному смещению
+ * от начала файла и соответствующее ей расширение.
+ * <p>
+ * Длина сигнатуры произвольна: например, 2 байта для BMP ("BM"), 3 байта для JPEG
+ * и 8 байтов для PNG. Сигнатура может начинаться не с начала файла (TAR содержит "ustar"
+ * по смещению 257) и может иметь маску: сравниваются только биты, установленные в маске.
+ * Так, RIFF-контейнеры различаются байтами 8–11, а байты 4–7 (размер) маскируются.
+ * </p>
+ * Текстовая запись сигнатуры: {@code HEX[&MASK][@OFFSET]}, где в HEX вместо байта можно указать
+ * {@code ??} — любой байт, например {@code 52494646????????57415645} или {@code 7573746172@257}.
+ */
+public class Signature {
+    /** Наибольшее смещение сигнатуры от начала файла. */
+    public static final int MAX_OFFSET = 64 * 1024;
+
+    // Значение маски для байта, сравниваемого полностью
+    private static final byte FULL_MASK = (byte) 0xFF;
+
+    private final byte[] bytes;
+    private final byte[] mask;
+    private final int offset;
+    private final String extension;
+    private final boolean exact;
+    private final int significantBits;
+
+    /**
+     * Конструктор сигнатуры без маски, расположенной в начале файла.
+     *
+     * @param bytes     Байты сигнатуры.
+     * @param extension Расширение файла.
+     */
+    public Signature(byte[] bytes, String extension) {
+        this(bytes, null, 0, extension);
+    }
+
+    /**
+     * Конструктор класса Signature.
+     *
+     * @param bytes     Байты сигнатуры.
+     * @param mask      Маска той же длины, что и байты, или null, если сравниваются все биты.
+     * @param offset    Смещение сигнатуры от начала файла, не больше {@link #MAX_OFFSET}.
+     * @param extension Расширение файла.
+     * @throws IllegalArgumentException Если сигнатура пуста, смещение вне допустимых пределов
+     *                                  или маска не сравнивает ни одного бита.
+     */
+    public Signature(byte[] bytes, byte[] mask, int offset, String extension) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Signature must not be empty: " + extension);
+        }
+        if (mask != null && mask.length != bytes.length) {
+            throw new IllegalArgumentException("Mask length must match signature length: " + extension);
+        }
+        if (offset < 0 || offset > MAX_OFFSET) {
+            throw new IllegalArgumentException("Signature offset must be between 0 and " + MAX_OFFSET + ": " + offset);
+        }
+        this.mask = new byte[bytes.length];
+        boolean allBitsCompared = true;
+        int bits = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            this.mask[i] = mask == null ? FULL_MASK : mask[i];
+            allBitsCompared &= this.mask[i] == FULL_MASK;
+            bits += Integer.bitCount(this.mask[i] & 0xFF);
+        }
+        if (bits == 0) {
+            // Сигнатура из одних подстановочных байтов совпала бы с любым файлом
+            throw new IllegalArgumentException("Signature must compare at least one bit: " + extension);
+        }
+        this.bytes = bytes.clone();
+        for (int i = 0; i < this.bytes.length; i++) {
+            this.bytes[i] &= this.mask[i];
+        }
+        this.offset = offset;
+        this.extension = extension;
+        this.exact = allBitsCompared;
+        this.significantBits = bits;
+    }
+
+    /**
+     * Создаёт сигнатуру из текстовой записи {@code HEX[&MASK][@OFFSET]}.
+     *
+     * @param spec      Текстовая запись сигнатуры, например {@code 89504E47} или {@code 4344303031@32769}.
+     * @param extension Расширение файла.
+     * @return Сигнатура.
+     * @throws IllegalArgumentException Если запись некорректна.
+     */
+    public static Signature parse(String spec, String extension) {
+        int offset = 0;
+        int at = spec.indexOf('@');
+        if (at >= 0) {
+            try {
+                offset = Integer.parseInt(spec.substring(at + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid signature offset: " + spec);
+            }
+            spec = spec.substring(0, at);
+        }
+
+        String maskHex = null;
+        int ampersand = spec.indexOf('&');
+        if (ampersand >= 0) {
+            maskHex = spec.substring(ampersand + 1).trim();
+            spec = spec.substring(0, ampersand);
+        }
+
+        String hex = spec.trim();
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex string must have even length: " + hex);
+        }
+        // Байты "??" превращаются в нулевые байты маски
+        byte[] mask = maskHex == null ? null : hexToBytes(maskHex);
+        if (hex.contains("?")) {
+            if (mask == null) {
+                mask = new byte[hex.length() / 2];
+                Arrays.fill(mask, FULL_MASK);
+            }
+            StringBuilder concrete = new StringBuilder(hex);
+            for (int i = 0; i < hex.length(); i += 2) {
+                if ("??".equals(hex.substring(i, i + 2)) && i / 2 < mask.length) {
+                    mask[i / 2] = 0;
+                    concrete.replace(i, i + 2, "00");
+                }
+            }
+            hex = concrete.toString();
+        }
+        return new Signature(hexToBytes(hex), mask, offset, extension);
+    }
+
+    /**
+     * Преобразует шестнадцатеричную строку в массив байтов.
+     *
+     * @param hex Шестнадцатеричная строка чётной длины.
+     * @return Массив байтов.
+     * @throws IllegalArgumentException Если строка не является корректной шестнадцатеричной записью.
+     */
+    public static byte[] hexToBytes(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex string must have even length: " + hex);
+        }
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex string: " + hex);
+            }
+            result[i] = (byte) ((high << 4) | low);
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, совпадает ли сигнатура с заголовком файла.
+     *
+     * @param header Заголовок файла: индекс 0 соответствует началу файла,
+     *               предел буфера — количеству прочитанных байтов.
+     * @return true, если заголовок содержит сигнатуру по её смещению.
+     */
+    public boolean matches(ByteBuffer header) {
+        return matches(header, offset);
+    }
+
+    /**
+     * Проверяет, совпадает ли сигнатура с байтами заголовка, начиная с заданной позиции буфера.
+     *
+     * @param header   Заголовок файла, например прочитанный по {@link HeaderLayout}.
+     * @param position Позиция первого байта сигнатуры в буфере.
+     * @return true, если байты заголовка совпадают с сигнатурой.
+     */
+    public boolean matches(ByteBuffer header, int position) {
+        if (position + bytes.length > header.limit()) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if ((byte) (header.get(position + i) & mask[i]) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, может ли один и тот же заголовок совпасть с обеими сигнатурами.
+     * <p>
+     * Сигнатуры совместимы, если на всех пересекающихся позициях их байты совпадают
+     * по битам, общим для обеих масок. Непересекающиеся сигнатуры всегда совместимы.
+     *
+     * @param other Другая сигнатура.
+     * @return true, если существует заголовок, совпадающий с обеими сигнатурами.
+     */
+    public boolean isCompatibleWith(Signature other) {
+        int from = Math.max(offset, other.offset);
+        int to = Math.min(getEnd(), other.getEnd());
+        for (int position = from; position < to; position++) {
+            int i = position - offset;
+            int j = position - other.offset;
+            byte common = (byte) (mask[i] & other.mask[j]);
+            if ((byte) (bytes[i] & common) != (byte) (other.bytes[j] & common)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает байт сигнатуры по индексу.
+     *
+     * @param index Индекс байта.
+     * @return Байт сигнатуры (с уже применённой маской).
+     */
+    public byte byteAt(int index) {
+        return bytes[index];
+    }
+
+    /**
+     * @return Длина сигнатуры в байтах.
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * @return Смещение сигнатуры от начала файла.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Смещение первого байта после сигнатуры, то есть размер заголовка, необходимый для сравнения.
+     */
+    public int getEnd() {
+        return offset + bytes.length;
+    }
+
+    /**
+     * @return true, если сигнатура сравнивается без маски.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return Количество битов, сравниваемых с заголовком (биты, установленные в маске).
+     */
+    public int getSignificantBits() {
+        return significantBits;
+    }
+
+    /**
+     * @return Расширение файла.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return Копия байтов сигнатуры.
+     */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * @return Копия маски сигнатуры.
+     */
+    public byte[] getMask() {
+        return mask.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Signature)) {
+            return false;
+        }
+        Signature other = (Signature) o;
+        return offset == other.offset && Arrays.equals(bytes, other.bytes)
+                && Arrays.equals(mask, other.mask) && extension.equals(other.extension);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * Arrays.hashCode(bytes) + Arrays.hashCode(mask)) + offset) + extension.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendHex(sb, bytes, true);
+        if (!exact) {
+            boolean wildcardsOnly = true;
+            for (byte m : mask) {
+                wildcardsOnly &= m == 0 || m == FULL_MASK;
+            }
+            if (!wildcardsOnly) {
+                appendHex(sb.append('&'), mask, false);
+            }
+        }
+        if (offset != 0) {
+            sb.append('@').append(offset);
+        }
+        return sb.append(':').append(extension).toString();
+    }
+
+    /**
+     * Дописывает байты в шестнадцатеричном виде, заменяя полностью замаскированные байты на {@code ??}.
+     */
+    private void appendHex(StringBuilder sb, byte[] data, boolean markWildcards) {
+        for (int i = 0; i < data.length; i++) {
+            if (markWildcards && mask[i] == 0) {
+                sb.append("??");
+                continue;
+            }
+            sb.append(Character.toUpperCase(Character.forDigit((data[i] >> 4) & 0xF, 16)));
+            sb.append(Character.toUpperCase(Character.forDigit(data[i] & 0xF, 16)));
+        }
+    }
+}
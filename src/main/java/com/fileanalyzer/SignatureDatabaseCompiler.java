@@ -0,0 +1,57 @@
+package com.fileanalyzer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Компилятор текстовой базы сигнатур в двоичный формат {@link BinarySignatureDatabase}.
+ * <p>
+ * Запускается при сборке (задача Gradle {@code compileSignatures}) и кладёт результат
+ * в ресурсы приложения рядом с текстовой базой.
+ * </p>
+ */
+public class SignatureDatabaseCompiler {
+
+    /**
+     * Точка входа компилятора.
+     *
+     * @param args Путь к текстовой базе и путь к создаваемому двоичному файлу.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: SignatureDatabaseCompiler <magic_numbers.txt> <magic_numbers.bin>");
+            System.exit(2);
+        }
+        try {
+            int count = compile(Paths.get(args[0]), Paths.get(args[1]));
+            System.out.println("Compiled " + count + " signatures into " + args[1]);
+        } catch (IOException e) {
+            ExceptionHandler.handleException(e, "Error compiling signature database");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Компилирует текстовую базу в двоичную.
+     *
+     * @param source Текстовая база.
+     * @param target Создаваемый двоичный файл.
+     * @return Количество скомпилированных сигнатур.
+     * @throws IOException Если произошла ошибка чтения или записи.
+     */
+    public static int compile(Path source, Path target) throws IOException {
+        byte[] text = Files.readAllBytes(source);
+        FileTypeDatabase database = new FileTypeDatabase(FileTypeDatabase.parseText(text), null, null);
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            BinarySignatureDatabase.write(database, BinarySignatureDatabase.checksum(text), out);
+        }
+        return database.getSignatures().size();
+    }
+}
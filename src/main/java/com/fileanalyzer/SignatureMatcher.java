@@ -0,0 +1,383 @@
+package com.fileanalyzer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Скомпилированный набор сигнатур для поиска по заголовку файла.
+ * <p>
+ * Сигнатуры без маски группируются по смещению, и для каждого смещения строится байтовый
+ * префиксный граф (trie). Граф хранится в плоских массивах: для каждого узла — отсортированные
+ * байты переходов и индексы дочерних узлов. Сигнатуры с маской проверяются по очереди.
+ * Поиск выполняется за один проход по заголовку файла, не создаёт объектов и возвращает
+ * самую длинную совпавшую сигнатуру.
+ * </p>
+ * По смещениям сигнатур строится разметка заголовка ({@link HeaderLayout}): файл читается не
+ * сплошным окном до конца самой дальней сигнатуры, а начальным диапазоном и немногими дальними,
+ * и поиск ({@link #match(ByteBuffer, HeaderLayout)}) находит байты каждой сигнатуры в таком буфере.
+ * <p>
+ * Экземпляры неизменяемы и могут использоваться из нескольких потоков одновременно.
+ * Плоские массивы можно сохранить в двоичную базу ({@link #writeTo}) и восстановить
+ * без повторного построения графа ({@link #readFrom}).
+ * </p>
+ */
+public class SignatureMatcher {
+    private static final byte[] NO_KEYS = new byte[0];
+    private static final int[] NO_CHILDREN = new int[0];
+    private static final Signature[] NO_SIGNATURES = new Signature[0];
+
+    // Смещения, для которых построены графы, и сами графы
+    private final int[] trieOffsets;
+    private final Trie[] tries;
+    // Сигнатуры с маской
+    private final Signature[] masked;
+    private final int headerLength;
+    private final HeaderLayout layout;
+
+    /**
+     * Компилирует набор сигнатур.
+     * <p>
+     * Если несколько сигнатур имеют одинаковые байты и смещение, используется последняя из них.
+     *
+     * @param signatures Сигнатуры для компиляции.
+     */
+    public SignatureMatcher(Collection<Signature> signatures) {
+        TreeMap<Integer, List<Signature>> exactByOffset = new TreeMap<>();
+        List<Signature> maskedList = new ArrayList<>();
+        int window = 0;
+        for (Signature signature : signatures) {
+            if (signature.isExact()) {
+                exactByOffset.computeIfAbsent(signature.getOffset(), k -> new ArrayList<>()).add(signature);
+            } else {
+                maskedList.add(signature);
+            }
+            window = Math.max(window, signature.getEnd());
+        }
+
+        trieOffsets = new int[exactByOffset.size()];
+        tries = new Trie[exactByOffset.size()];
+        int i = 0;
+        for (Map.Entry<Integer, List<Signature>> entry : exactByOffset.entrySet()) {
+            trieOffsets[i] = entry.getKey();
+            tries[i] = new Trie(entry.getValue());
+            i++;
+        }
+        masked = maskedList.toArray(NO_SIGNATURES);
+        headerLength = window;
+        layout = layout(trieOffsets, tries, masked);
+    }
+
+    private SignatureMatcher(int[] trieOffsets, Trie[] tries, Signature[] masked, int headerLength) {
+        this.trieOffsets = trieOffsets;
+        this.tries = tries;
+        this.masked = masked;
+        this.headerLength = headerLength;
+        this.layout = layout(trieOffsets, tries, masked);
+    }
+
+    /**
+     * Строит разметку заголовка по участкам, которые проверяют графы и сигнатуры с маской.
+     */
+    private static HeaderLayout layout(int[] trieOffsets, Trie[] tries, Signature[] masked) {
+        int count = tries.length + masked.length;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < tries.length; i++) {
+            starts[i] = trieOffsets[i];
+            ends[i] = trieOffsets[i] + tries[i].maxLength;
+        }
+        for (int i = 0; i < masked.length; i++) {
+            starts[tries.length + i] = masked[i].getOffset();
+            ends[tries.length + i] = masked[i].getEnd();
+        }
+        return HeaderLayout.of(starts, ends);
+    }
+
+    /**
+     * Записывает скомпилированные массивы поиска. Сигнатуры записываются индексами.
+     *
+     * @param out   Поток для записи.
+     * @param index Индексы сигнатур в двоичной базе.
+     * @throws IOException Если произошла ошибка записи.
+     */
+    void writeTo(DataOutputStream out, Map<Signature, Integer> index) throws IOException {
+        out.writeInt(headerLength);
+        out.writeInt(tries.length);
+        for (int i = 0; i < tries.length; i++) {
+            out.writeInt(trieOffsets[i]);
+            tries[i].writeTo(out, index);
+        }
+        out.writeInt(masked.length);
+        for (Signature signature : masked) {
+            out.writeInt(index.get(signature));
+        }
+    }
+
+    /**
+     * Восстанавливает массивы поиска, записанные {@link #writeTo}.
+     *
+     * @param in         Буфер, позиция которого указывает на начало данных.
+     * @param signatures Сигнатуры двоичной базы.
+     * @return Скомпилированный поиск.
+     */
+    static SignatureMatcher readFrom(ByteBuffer in, List<Signature> signatures) {
+        int headerLength = in.getInt();
+        int trieCount = in.getInt();
+        int[] trieOffsets = new int[trieCount];
+        Trie[] tries = new Trie[trieCount];
+        for (int i = 0; i < trieCount; i++) {
+            trieOffsets[i] = in.getInt();
+            tries[i] = Trie.readFrom(in, signatures);
+        }
+        Signature[] masked = new Signature[in.getInt()];
+        for (int i = 0; i < masked.length; i++) {
+            masked[i] = signatures.get(in.getInt());
+        }
+        return new SignatureMatcher(trieOffsets, tries, masked, headerLength);
+    }
+
+    /**
+     * Ищет самую длинную сигнатуру, совпадающую с заголовком.
+     * <p>
+     * Используются абсолютные операции чтения, поэтому позиция буфера не изменяется,
+     * а сам буфер может быть прямым.
+     *
+     * @param header Заголовок файла: индекс 0 соответствует началу файла,
+     *               предел буфера — количеству прочитанных байтов.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     */
+    public Signature match(ByteBuffer header) {
+        return match(header, null);
+    }
+
+    /**
+     * Ищет самую длинную сигнатуру в заголовке, прочитанном по разметке.
+     *
+     * @param header Заголовок файла, прочитанный по разметке {@code layout}; предел буфера —
+     *               количество прочитанных байтов.
+     * @param layout Разметка заголовка ({@link #getLayout()}) или null, если индекс буфера
+     *               совпадает со смещением в файле.
+     * @return Совпавшая сигнатура или null, если совпадений нет.
+     */
+    public Signature match(ByteBuffer header, HeaderLayout layout) {
+        Signature best = null;
+        for (int i = 0; i < tries.length; i++) {
+            int position = layout == null ? trieOffsets[i] : layout.position(trieOffsets[i]);
+            Signature candidate = position < 0 ? null : tries[i].match(header, position);
+            if (candidate != null && (best == null || candidate.length() > best.length())) {
+                best = candidate;
+            }
+        }
+        for (Signature candidate : masked) {
+            if (best != null && candidate.length() <= best.length()) {
+                continue;
+            }
+            int position = layout == null ? candidate.getOffset() : layout.position(candidate.getOffset());
+            if (position >= 0 && candidate.matches(header, position)) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Размер заголовка, покрывающий все сигнатуры с учётом их смещений.
+     */
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    /**
+     * @return Разметка заголовка: диапазоны файла, которые проверяют сигнатуры.
+     */
+    public HeaderLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Байтовый префиксный граф сигнатур с общим смещением.
+     */
+    private static class Trie {
+        // Байты переходов каждого узла, отсортированные как беззнаковые числа
+        private final byte[][] keys;
+        // Индексы дочерних узлов, соответствующие keys
+        private final int[][] children;
+        // Сигнатура, заканчивающаяся в узле, или null
+        private final Signature[] terminals;
+        private final int maxLength;
+
+        Trie(List<Signature> signatures) {
+            Node root = new Node();
+            int longest = 0;
+            int nodeCount = 1;
+            for (Signature signature : signatures) {
+                Node node = root;
+                for (int i = 0; i < signature.length(); i++) {
+                    int key = signature.byteAt(i) & 0xFF;
+                    Node child = node.children.get(key);
+                    if (child == null) {
+                        child = new Node();
+                        node.children.put(key, child);
+                        nodeCount++;
+                    }
+                    node = child;
+                }
+                node.terminal = signature;
+                longest = Math.max(longest, signature.length());
+            }
+
+            keys = new byte[nodeCount][];
+            children = new int[nodeCount][];
+            terminals = new Signature[nodeCount];
+            maxLength = longest;
+            flatten(root);
+        }
+
+        private Trie(byte[][] keys, int[][] children, Signature[] terminals, int maxLength) {
+            this.keys = keys;
+            this.children = children;
+            this.terminals = terminals;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Записывает плоские массивы графа.
+         */
+        void writeTo(DataOutputStream out, Map<Signature, Integer> index) throws IOException {
+            out.writeInt(maxLength);
+            out.writeInt(keys.length);
+            for (int node = 0; node < keys.length; node++) {
+                out.writeInt(terminals[node] == null ? -1 : index.get(terminals[node]));
+                out.writeShort(keys[node].length);
+                out.write(keys[node]);
+                for (int child : children[node]) {
+                    out.writeInt(child);
+                }
+            }
+        }
+
+        /**
+         * Читает плоские массивы графа, записанные {@link #writeTo}.
+         */
+        static Trie readFrom(ByteBuffer in, List<Signature> signatures) {
+            int maxLength = in.getInt();
+            int nodeCount = in.getInt();
+            byte[][] keys = new byte[nodeCount][];
+            int[][] children = new int[nodeCount][];
+            Signature[] terminals = new Signature[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int terminal = in.getInt();
+                terminals[node] = terminal < 0 ? null : signatures.get(terminal);
+                int size = in.getShort() & 0xFFFF;
+                keys[node] = size == 0 ? NO_KEYS : new byte[size];
+                children[node] = size == 0 ? NO_CHILDREN : new int[size];
+                in.get(keys[node]);
+                for (int i = 0; i < size; i++) {
+                    children[node][i] = in.getInt();
+                }
+            }
+            return new Trie(keys, children, terminals, maxLength);
+        }
+
+        /**
+         * Раскладывает граф в плоские массивы обходом в ширину.
+         *
+         * @param root Корневой узел.
+         */
+        private void flatten(Node root) {
+            Queue<Node> queue = new ArrayDeque<>();
+            List<Node> order = new ArrayList<>();
+            root.index = 0;
+            queue.add(root);
+            int next = 1;
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                order.add(node);
+                for (Node child : node.children.values()) {
+                    child.index = next++;
+                    queue.add(child);
+                }
+            }
+            for (Node node : order) {
+                int size = node.children.size();
+                byte[] nodeKeys = size == 0 ? NO_KEYS : new byte[size];
+                int[] nodeChildren = size == 0 ? NO_CHILDREN : new int[size];
+                int i = 0;
+                for (Map.Entry<Integer, Node> entry : node.children.entrySet()) {
+                    nodeKeys[i] = (byte) entry.getKey().intValue();
+                    nodeChildren[i] = entry.getValue().index;
+                    i++;
+                }
+                keys[node.index] = nodeKeys;
+                children[node.index] = nodeChildren;
+                terminals[node.index] = node.terminal;
+            }
+        }
+
+        /**
+         * Ищет самую длинную сигнатуру графа, начинающуюся в заголовке по заданной позиции.
+         *
+         * @param header Заголовок файла.
+         * @param offset Позиция сигнатур графа в буфере заголовка.
+         * @return Совпавшая сигнатура или null.
+         */
+        Signature match(ByteBuffer header, int offset) {
+            int limit = Math.min(header.limit(), offset + maxLength);
+            int node = 0;
+            Signature best = null;
+            for (int i = offset; i < limit; i++) {
+                node = findChild(node, header.get(i));
+                if (node < 0) {
+                    break;
+                }
+                if (terminals[node] != null) {
+                    best = terminals[node];
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Двоичный поиск перехода по байту.
+         *
+         * @param node Индекс текущего узла.
+         * @param b    Байт заголовка.
+         * @return Индекс дочернего узла или -1, если перехода нет.
+         */
+        private int findChild(int node, byte b) {
+            byte[] nodeKeys = keys[node];
+            int key = b & 0xFF;
+            int low = 0;
+            int high = nodeKeys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midKey = nodeKeys[mid] & 0xFF;
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return children[node][mid];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Узел графа на этапе построения.
+     */
+    private static class Node {
+        private final TreeMap<Integer, Node> children = new TreeMap<>();
+        private Signature terminal;
+        private int index;
+    }
+}
@@ -0,0 +1,36 @@
+package com.fileanalyzer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Чтение заголовка через {@link FileInputStream} в новый массив для каждого файла.
+ * <p>
+ * Повторяет исходный путь чтения и служит базой для сравнения с {@link ChannelHeaderReader}.
+ * </p>
+ */
+public class StreamHeaderReader implements HeaderReader {
+
+    @Override
+    public ByteBuffer read(File file, HeaderLayout layout) throws IOException {
+        byte[] header = new byte[layout.getLength()];
+        int length = 0;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            long offset = 0;
+            for (int range = 0; range < layout.getRangeCount(); range++) {
+                // FileInputStream пропускает байты перемещением позиции, без чтения
+                offset += fis.skip(layout.getStart(range) - offset);
+                int size = layout.getEnd(range) - layout.getStart(range);
+                int read = fis.readNBytes(header, layout.getPosition(range), size);
+                offset += read;
+                length = layout.getPosition(range) + read;
+                if (read < size) {
+                    break;
+                }
+            }
+        }
+        return ByteBuffer.wrap(header, 0, length);
+    }
+}
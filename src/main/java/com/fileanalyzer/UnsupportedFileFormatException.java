@@ -24,4 +24,17 @@ public class UnsupportedFileFormatException extends Exception {
     public UnsupportedFileFormatException(String message) {
         super(message);
     }
+
+    /**
+     * Создает новое исключение с указанным сообщением, при необходимости без трассировки стека.
+     * <p>
+     * Исключение без трассировки стека создаётся значительно быстрее и подходит для случаев,
+     * когда неподдерживаемый формат — ожидаемый результат, а не ошибка программы.
+     *
+     * @param message            Сообщение, описывающее причину возникновения исключения.
+     * @param writableStackTrace false, чтобы не заполнять трассировку стека.
+     */
+    public UnsupportedFileFormatException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
\ No newline at end of file
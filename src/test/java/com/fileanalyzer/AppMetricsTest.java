@@ -0,0 +1,105 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLatencyHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(99 * 1000 + 1_000_000, histogram.getSum());
+        assertEquals(1_000_000, histogram.getMax());
+        // 1000 нс попадает в корзину [512, 1024), 1 000 000 нс — в корзину [2^19, 2^20)
+        assertEquals(1023, histogram.getPercentile(0.5));
+        assertEquals(1023, histogram.getPercentile(0.99));
+        assertEquals(1_000_000, histogram.getPercentile(1.0));
+        assertEquals(0, new LatencyHistogram("empty").getPercentile(0.99));
+    }
+
+    @Test
+    public void testDetectionMetricsAndReports() throws Exception {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+
+        // Метрики общие для всего процесса, поэтому проверяем приращения
+        long png = AppMetrics.getDetected().getOrDefault("png", 0L);
+        long unknown = AppMetrics.getDetected().getOrDefault("unknown", 0L);
+        long reads = AppMetrics.HEADER_READ.getCount();
+        long matches = AppMetrics.SIGNATURE_MATCH.getCount();
+        LatencyHistogram pngLatency = AppMetrics.getDetectionLatency().get("png");
+        long pngTimed = pngLatency == null ? 0 : pngLatency.getCount();
+
+        URL resource = getClass().getClassLoader().getResource("test.png");
+        assertNotNull(resource, "Файл test.png не найден в ресурсах");
+        analyzer.detectFile(new File(resource.getFile()));
+        analyzer.detectFile(Files.write(tempDir.resolve("zero.pdf"), new byte[8]).toFile());
+
+        assertEquals(png + 1, AppMetrics.getDetected().get("png"));
+        assertEquals(unknown + 1, AppMetrics.getDetected().get("unknown"));
+        assertEquals(reads + 2, AppMetrics.HEADER_READ.getCount());
+        assertEquals(matches + 2, AppMetrics.SIGNATURE_MATCH.getCount());
+        // Задержка учитывается отдельно для каждого типа
+        assertEquals(pngTimed + 1, AppMetrics.getDetectionLatency().get("png").getCount());
+        assertTrue(AppMetrics.getDetectionLatency().get("unknown").getCount() >= 1);
+
+        // Показатели вычисляются при снятии отчёта
+        AppMetrics.registerGauge("test_gauge", () -> 42);
+        try {
+            String prometheus = MetricsReporter.toPrometheus();
+            assertTrue(prometheus.contains("fileanalyzer_files_detected_total{type=\"png\"} "));
+            assertTrue(prometheus.contains("fileanalyzer_header_read_seconds_bucket{le=\"+Inf\"} "));
+            assertTrue(prometheus.contains("fileanalyzer_test_gauge 42"));
+            assertTrue(prometheus.contains("fileanalyzer_detection_seconds_count{type=\"png\"} "));
+            assertTrue(prometheus.contains("fileanalyzer_detection_seconds_bucket{type=\"png\",le=\"+Inf\"} "));
+
+            // Отчёт в файле JSON
+            Path report = tempDir.resolve("metrics.json");
+            new MetricsReporter(report, 3600).close();
+            String json = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+            assertTrue(json.contains("\"test_gauge\": 42"));
+            assertTrue(json.contains("\"header_read\": {\"count\": "));
+            assertTrue(json.contains("\"detection_latency_ns\": {"));
+            assertTrue(json.contains("\"png\": {\"count\": "));
+            // Временные файлы выгрузки не остаются рядом с отчётом
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(0, files.filter(p -> p.toString().endsWith(".tmp")).count());
+            }
+
+            // Те же значения доступны через JMX
+            MetricsMBean.register();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MetricsMBean.OBJECT_NAME);
+            assertEquals(42L, server.getAttribute(name, "gauge.test_gauge"));
+            assertTrue((Long) server.getAttribute(name, "detected.png") >= png + 1);
+            assertTrue((Long) server.getAttribute(name, "detection.png.count") >= pngTimed + 1);
+        } finally {
+            AppMetrics.unregisterGauge("test_gauge");
+        }
+    }
+}
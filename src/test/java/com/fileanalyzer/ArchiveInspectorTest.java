@@ -0,0 +1,153 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveInspectorTest {
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0};
+    private static final byte[] JPG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 0x10};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testNestedArchiveInventory() throws IOException {
+        FileTypeDatabase database = database();
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+
+        // backup.zip: image.png и data.tar.gz, внутри которого photo.jpg и пустой файл
+        byte[] tar = tar("photo.jpg", JPG, "empty.bin", new byte[0]);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(tar);
+        }
+        Path archive = tempDir.resolve("backup.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            zip.putNextEntry(new ZipEntry("dir/image.png"));
+            zip.write(PNG);
+            zip.putNextEntry(new ZipEntry("data.tar.gz"));
+            zip.write(gzip.toByteArray());
+            // Архив, обрезанный посреди сжатых данных записи
+            ByteArrayOutputStream broken = new ByteArrayOutputStream();
+            try (ZipOutputStream inner = new ZipOutputStream(broken)) {
+                inner.putNextEntry(new ZipEntry("large.bin"));
+                for (int i = 0; i < 4096; i++) {
+                    inner.write(i * 31);
+                }
+            }
+            zip.putNextEntry(new ZipEntry("broken.zip"));
+            zip.write(broken.toByteArray(), 0, 60);
+        }
+
+        ArchiveInspector.Inventory inventory = new ArchiveInspector(analyzer, 8).inspect(archive.toFile());
+        List<ArchiveInspector.Entry> entries = inventory.getEntries();
+        String root = archive.toString();
+        assertEquals(root, entries.get(0).getPath());
+        assertEquals("zip", entries.get(0).getResult().getExtension());
+        assertEntry(entries.get(1), root + "!/dir/image.png", 1, "png");
+        assertEntry(entries.get(2), root + "!/data.tar.gz", 1, "gz");
+        assertEntry(entries.get(3), root + "!/data.tar.gz!/data.tar", 2, "tar");
+        assertEntry(entries.get(4), root + "!/data.tar.gz!/data.tar!/photo.jpg", 3, "jpg");
+        assertEquals(JPG.length, entries.get(4).getSize());
+        assertEntry(entries.get(5), root + "!/data.tar.gz!/data.tar!/empty.bin", 3, null);
+        assertEntry(entries.get(6), root + "!/broken.zip", 1, "zip");
+        assertNotNull(entries.get(6).getError(), "Повреждённый архив отмечается ошибкой");
+        assertEquals(7, entries.size());
+        assertEquals(1, inventory.getErrors());
+
+        // Ограничение глубины: вложенные архивы не раскрываются
+        List<ArchiveInspector.Entry> shallow = new ArchiveInspector(analyzer, 2).inspect(archive.toFile()).getEntries();
+        assertEquals(4, shallow.size());
+        assertEquals(root + "!/broken.zip", shallow.get(3).getPath());
+    }
+
+    @Test
+    public void testMalformedEntriesAreFlagged() throws IOException {
+        FileAnalyzer analyzer = new FileAnalyzer(database());
+
+        // Имя записи в CP866 без флага UTF-8: ZipInputStream бросает IllegalArgumentException
+        Path names = tempDir.resolve("names.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(names), Charset.forName("IBM866"))) {
+            zip.putNextEntry(new ZipEntry("фото.png"));
+            zip.write(PNG);
+        }
+        // Длинное имя GNU, объявленное размером больше допустимого
+        byte[] tar = tar("././@LongLink", new byte[100_000], "photo.jpg", JPG);
+        tar[156] = 'L';
+        Path longName = Files.write(tempDir.resolve("long.tar"), tar);
+
+        ArchiveInspector inspector = new ArchiveInspector(analyzer, 4);
+        for (Path archive : List.of(names, longName)) {
+            ArchiveInspector.Inventory inventory = inspector.inspect(archive.toFile());
+            assertEquals(1, inventory.getErrors());
+            assertNotNull(inventory.getEntries().get(0).getError(), "Архив отмечается ошибкой: " + archive);
+        }
+
+        // Обход дерева продолжается после повреждённых архивов
+        Files.write(tempDir.resolve("image.png"), PNG);
+        assertTrue(inspector.inspectTree(tempDir, new PrintStream(new ByteArrayOutputStream())) >= 4);
+    }
+
+    private static void assertEntry(ArchiveInspector.Entry entry, String path, int depth, String extension) {
+        assertEquals(path, entry.getPath());
+        assertEquals(depth, entry.getDepth());
+        assertEquals(extension, entry.getResult().getExtension());
+    }
+
+    private FileTypeDatabase database() throws IOException {
+        Path file = tempDir.resolve("magic_numbers.txt");
+        Files.write(file, List.of("504B0304:zip", "1F8B:gz", "7573746172@257:tar", "89504E47:png", "FFD8FFE0:jpg"),
+                StandardCharsets.UTF_8);
+        return new FileTypeDatabase(file.toString());
+    }
+
+    /**
+     * Собирает архив TAR (ustar) из пар «имя, содержимое».
+     */
+    private static byte[] tar(Object... files) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < files.length; i += 2) {
+            byte[] data = (byte[]) files[i + 1];
+            byte[] header = new byte[512];
+            put(header, 0, (String) files[i]);
+            put(header, 100, "0000644");
+            put(header, 124, String.format("%011o", data.length));
+            put(header, 136, String.format("%011o", 0));
+            header[156] = '0';
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            // Контрольная сумма считается при поле суммы, заполненном пробелами
+            put(header, 148, "        ");
+            int sum = 0;
+            for (byte b : header) {
+                sum += b & 0xFF;
+            }
+            put(header, 148, String.format("%06o\0 ", sum));
+            out.write(header);
+            out.write(data);
+            out.write(new byte[(512 - data.length % 512) % 512]);
+        }
+        out.write(new byte[1024]);
+        return out.toByteArray();
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
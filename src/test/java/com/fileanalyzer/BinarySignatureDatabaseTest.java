@@ -0,0 +1,63 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinarySignatureDatabaseTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCompiledDatabaseMatchesText() throws IOException {
+        Path text = tempDir.resolve("magic_numbers.txt");
+        Files.write(text, String.join("\n", "FFD8FF:jpg", "89504E470D0A1A0A:png", "504B0304:zip",
+                "504B030414000600:docx", "52494646????????57415645:wav", "7573746172@257:tar", "F0&F0@3:x")
+                .getBytes(StandardCharsets.UTF_8));
+        Path binary = tempDir.resolve("magic_numbers.bin");
+
+        assertEquals(7, SignatureDatabaseCompiler.compile(text, binary));
+        FileTypeDatabase expected = FileTypeDatabase.load(text);
+        FileTypeDatabase actual = FileTypeDatabase.load(binary);
+
+        // Двоичная база должна содержать те же сигнатуры и давать те же результаты поиска
+        assertEquals(expected.getSignatures(), actual.getSignatures());
+        assertEquals(expected.getHeaderLength(), actual.getHeaderLength());
+        for (String hex : new String[]{"FFD8FFE0", "89504E470D0A1A0A", "504B03041400060008", "504B0304",
+                "52494646000000005741564566", "000000F5", "0000"}) {
+            byte[] header = Signature.hexToBytes(hex);
+            assertEquals(expected.match(header, header.length), actual.match(header, header.length), hex);
+            assertEquals(expected.match(header, header.length, "zip"), actual.match(header, header.length, "zip"), hex);
+        }
+        assertTrue(actual.isExtensionSupported("docx"));
+    }
+
+    @Test
+    public void testDetectsStaleDatabase() throws IOException {
+        Path text = tempDir.resolve("magic_numbers.txt");
+        Files.write(text, "FFD8FF:jpg".getBytes(StandardCharsets.UTF_8));
+        Path binary = tempDir.resolve("magic_numbers.bin");
+        SignatureDatabaseCompiler.compile(text, binary);
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(binary));
+        assertTrue(BinarySignatureDatabase.isCurrent(buffer, Files.readAllBytes(text)));
+        assertFalse(BinarySignatureDatabase.isCurrent(buffer, "FFD8FF:jpeg".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> BinarySignatureDatabase.read(ByteBuffer.wrap(new byte[8])));
+
+        // Повреждённые длины и количества сообщаются как IOException, чтобы сработал переход на текстовую базу
+        ByteBuffer negativeCount = ByteBuffer.wrap(Files.readAllBytes(binary));
+        negativeCount.putInt(16, -5);
+        assertThrows(IOException.class, () -> BinarySignatureDatabase.read(negativeCount));
+        ByteBuffer longSignature = ByteBuffer.wrap(Files.readAllBytes(binary));
+        longSignature.putShort(24, (short) -1);
+        assertThrows(IOException.class, () -> BinarySignatureDatabase.read(longSignature));
+    }
+}
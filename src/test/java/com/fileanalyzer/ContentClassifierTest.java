@@ -0,0 +1,144 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentClassifierTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testClassifyTextFormats() throws Exception {
+        ContentClassifier classifier = new ContentClassifier();
+
+        assertGuess(classifier, "csv", text("id,name,price\n1,apple,0.5\n2,pear,0.7\n3,plum,1.2\n"));
+        assertGuess(classifier, "csv", text("id;name\r\n1;яблоко\r\n2;груша\r\n"));
+        assertGuess(classifier, "tsv", text("id\tname\tprice\n1\tapple\t0.5\n2\tpear\t0.7\n"));
+        assertGuess(classifier, "json", text("{\"name\": \"файл\", \"size\": [1, 2.5e3, true, null]}"));
+        assertGuess(classifier, "json", text("[{\"a\": 1}, {\"b\": \"x\\\"y\"}]\n"));
+        assertGuess(classifier, "xml", text("<?xml version=\"1.0\"?>\n<root><item/></root>"));
+        assertGuess(classifier, "xml", text("<config>\n  <entry key=\"a\">1</entry>\n</config>\n"));
+        assertGuess(classifier, "html", text("<!DOCTYPE html>\n<html><body>Привет</body></html>"));
+        assertGuess(classifier, "txt", text("Обычный текст без структуры.\nВторая строка, с запятой.\n"));
+        assertGuess(classifier, "txt", text("{ not json at all }"));
+
+        // UTF-16 с меткой порядка байтов и без неё
+        assertGuess(classifier, "xml", encode("\uFEFF<?xml version=\"1.0\"?><a/>", StandardCharsets.UTF_16LE));
+        assertGuess(classifier, "json", encode("{\"a\": [1, 2]}", StandardCharsets.UTF_16BE));
+        assertGuess(classifier, "txt", encode("Plain text in UTF-16\r\n", StandardCharsets.UTF_16LE));
+
+        // Обрезанный выборкой JSON распознаётся с меньшей уверенностью
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            array.append(i).append(", ");
+        }
+        DetectionResult complete = classifier.classify(text("[1, 2, 3]"));
+        DetectionResult truncated = classifier.classify(text(array.toString()));
+        assertEquals("json", truncated.getExtension());
+        assertTrue(truncated.getConfidence() < complete.getConfidence());
+
+        // Однобайтовая кодировка снижает уверенность
+        DetectionResult cp1251 = classifier.classify(encode("a;b\r\nпривет;мир\r\nраз;два\r\n",
+                Charset.forName("windows-1251")));
+        assertEquals("csv", cp1251.getExtension());
+        assertTrue(cp1251.getConfidence() < classifier.classify(text("a;b\r\nx;y\r\nz;w\r\n")).getConfidence());
+
+        // Двоичные и пустые данные не классифицируются
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        assertSame(DetectionResult.UNSUPPORTED, classifier.classify(ByteBuffer.wrap(random)));
+        assertSame(DetectionResult.UNSUPPORTED, classifier.classify(ByteBuffer.wrap(new byte[]{1, 2, 0, 0, 5, 6, 0, 7})));
+        assertSame(DetectionResult.UNSUPPORTED, classifier.classify(ByteBuffer.allocate(0)));
+
+        // Позиция буфера не изменяется
+        ByteBuffer buffer = text("a,b\n1,2\n3,4\n");
+        buffer.position(0);
+        classifier.classify(buffer);
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testAnalyzerFallsBackToHeuristics() throws Exception {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+
+        byte[] csv = "name,size\nphoto,100\nscan,200\n".getBytes(StandardCharsets.UTF_8);
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+        DetectionResult result = analyzer.detect(csv);
+        assertTrue(result.isDetected());
+        assertTrue(result.isHeuristic());
+        assertEquals("csv", result.getExtension());
+        assertNull(result.getSignature());
+        assertTrue(result.getConfidence() <= ContentClassifier.MAX_CONFIDENCE);
+        assertTrue(result.toString().contains("heuristic"));
+
+        // Точное совпадение сигнатуры не заменяется эвристикой
+        byte[] pdf = "%PDF-1.4\n1 0 obj\n".getBytes(StandardCharsets.US_ASCII);
+        DetectionResult exact = analyzer.detect(pdf);
+        assertFalse(exact.isHeuristic());
+        assertEquals("pdf", exact.getExtension());
+        assertEquals(1.0, exact.getConfidence());
+
+        // Без классификатора текст остаётся неопознанным
+        FileAnalyzer strict = new FileAnalyzer(() -> database, new ChannelHeaderReader(), null, null);
+        assertFalse(strict.detect(csv).isDetected());
+    }
+
+    @Test
+    public void testDetectFileClassifiesTextFiles() throws Exception {
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+        byte[] csv = "name,size\nphoto,100\nscan,200\n".getBytes(StandardCharsets.UTF_8);
+        File data = Files.write(tempDir.resolve("data.csv"), csv).toFile();
+        File json = Files.write(tempDir.resolve("x.json"), "{\"a\": [1, 2]}".getBytes(StandardCharsets.UTF_8)).toFile();
+        File notes = Files.write(tempDir.resolve("notes.txt"),
+                "Обычный текст.\n".getBytes(StandardCharsets.UTF_8)).toFile();
+        File noExtension = Files.write(tempDir.resolve("noext"), csv).toFile();
+        File unknown = Files.write(tempDir.resolve("data.xyz"), csv).toFile();
+
+        // Текстовые форматы и файлы без расширения проходят проверку расширения
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+        assertEquals("csv", analyzer.detectFile(data).getExtension());
+        assertEquals("json", analyzer.detectFile(json).getExtension());
+        assertEquals("txt", analyzer.detectFile(notes).getExtension());
+        DetectionResult guessed = analyzer.detectFile(noExtension);
+        assertTrue(guessed.isHeuristic());
+        assertEquals("csv", guessed.getExtension());
+        assertSame(DetectionResult.UNSUPPORTED, analyzer.detectFile(unknown));
+
+        // Без классификатора проверка расширения прежняя
+        FileAnalyzer strict = new FileAnalyzer(() -> database, new ChannelHeaderReader(), null, null);
+        assertSame(DetectionResult.UNSUPPORTED, strict.detectFile(data));
+        assertSame(DetectionResult.UNSUPPORTED, strict.detectFile(noExtension));
+    }
+
+    private static void assertGuess(ContentClassifier classifier, String extension, ByteBuffer data) {
+        DetectionResult result = classifier.classify(data);
+        assertEquals(extension, result.getExtension(), "Неверный формат: " + result);
+        assertTrue(result.isHeuristic());
+        assertTrue(result.getConfidence() > 0 && result.getConfidence() <= ContentClassifier.MAX_CONFIDENCE);
+    }
+
+    private static ByteBuffer text(String content) {
+        return encode(content, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer encode(String content, Charset charset) {
+        return ByteBuffer.wrap(content.getBytes(charset));
+    }
+}
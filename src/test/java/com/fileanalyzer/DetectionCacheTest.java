@@ -0,0 +1,189 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DetectionCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRescanUsesPersistedResults() throws IOException, URISyntaxException {
+        FileTypeDatabase database = new FileTypeDatabase(resource("magic_numbers.txt").toString());
+        Path store = tempDir.resolve("detection.cache");
+        File png = Files.copy(resource("test.png"), tempDir.resolve("image.png")).toFile();
+        File unknown = Files.write(tempDir.resolve("unknown.jpg"), new byte[16]).toFile();
+
+        // Первый проход: промахи, результаты записываются в журнал
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint())) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            assertEquals("png", analyzer.detectFile(png).getExtension());
+            assertSame(DetectionResult.UNSUPPORTED, analyzer.detectFile(unknown));
+            assertEquals(0, cache.getHits());
+            assertEquals(2, cache.getMisses());
+        }
+
+        // Второй проход в новом экземпляре: результаты берутся из журнала
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint())) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            assertEquals("png", analyzer.detectFile(png).getExtension());
+            assertSame(DetectionResult.UNSUPPORTED, analyzer.detectFile(unknown));
+            assertEquals(2, cache.getHits());
+
+            // Изменённый файл анализируется заново
+            Files.copy(resource("test.jpg"), png.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(png.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            assertEquals("jpg", analyzer.detectFile(png).getExtension());
+            assertEquals(1, cache.getMisses());
+        }
+
+        // Журнал другой базы сигнатур не используется
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint() + 1)) {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testIndexServesTreesLargerThanMemory() throws IOException, URISyntaxException {
+        FileTypeDatabase database = new FileTypeDatabase(resource("magic_numbers.txt").toString());
+        Path store = tempDir.resolve("detection.cache");
+        File[] files = new File[200];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = Files.write(tempDir.resolve("doc" + i + ".pdf"),
+                    ("%PDF-1.4\n" + i).getBytes(StandardCharsets.US_ASCII)).toFile();
+        }
+
+        // В памяти помещается 16 записей, журнал сливается в индекс несколькими частями
+        try (DetectionCache cache = new DetectionCache(store, 16, database.getFingerprint())) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            for (File file : files) {
+                assertEquals("pdf", analyzer.detectFile(file).getExtension());
+            }
+            assertEquals(0, cache.getHits());
+        }
+
+        // Вытесненные из памяти записи находятся в индексе
+        try (DetectionCache cache = new DetectionCache(store, 16, database.getFingerprint())) {
+            assertEquals(files.length, cache.getStoredRecords());
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            for (File file : files) {
+                assertEquals("pdf", analyzer.detectFile(file).getExtension());
+            }
+            assertEquals(files.length, cache.getHits());
+            assertTrue(cache.size() <= 16);
+
+            // Изменённый файл перезаписывает свою запись, не затрагивая остальные
+            Files.copy(resource("test.jpg"), files[7].toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(files[7].toPath(), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            assertEquals("jpg", analyzer.detectFile(files[7]).getExtension());
+        }
+
+        try (DetectionCache cache = new DetectionCache(store, 16, database.getFingerprint())) {
+            assertEquals(files.length, cache.getStoredRecords());
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            for (int i = 0; i < files.length; i++) {
+                assertEquals(i == 7 ? "jpg" : "pdf", analyzer.detectFile(files[i]).getExtension());
+            }
+            assertEquals(files.length, cache.getHits());
+        }
+    }
+
+    @Test
+    public void testTruncatesPartialTailRecord() throws IOException, URISyntaxException {
+        FileTypeDatabase database = new FileTypeDatabase(resource("magic_numbers.txt").toString());
+        Path store = tempDir.resolve("detection.cache");
+        Path journal = tempDir.resolve("detection.cache.log");
+        File[] files = new File[4];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = Files.copy(resource("test.png"), tempDir.resolve("image" + i + ".png")).toFile();
+        }
+
+        // Процесс оборвался посреди записи: журнал остался, от последней записи уцелели не все байты
+        byte[] log;
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint())) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            analyzer.detectFile(files[0]);
+            analyzer.detectFile(files[1]);
+            cache.flush();
+            log = Files.readAllBytes(journal);
+        }
+        Files.delete(store);
+        Files.write(journal, Arrays.copyOf(log, log.length - 7));
+
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint())) {
+            assertEquals(1, cache.getStoredRecords());
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            for (File file : files) {
+                analyzer.detectFile(file);
+            }
+            // Оборванная запись потеряна, остальные файлы анализируются заново
+            assertEquals(1, cache.getHits());
+        }
+
+        // Записи, добавленные после восстановления, читаются без искажений
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint())) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            for (File file : files) {
+                assertEquals("png", analyzer.detectFile(file).getExtension());
+            }
+            assertEquals(4, cache.getHits());
+        }
+        assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void testHeuristicResultsAndMode() throws IOException, URISyntaxException {
+        FileTypeDatabase database = new FileTypeDatabase(resource("magic_numbers.txt").toString());
+        Path store = tempDir.resolve("detection.cache");
+        File csv = Files.write(tempDir.resolve("table.pdf"),
+                "name,size\nphoto,100\nscan,200\n".getBytes(StandardCharsets.UTF_8)).toFile();
+
+        // Без эвристик CSV не распознаётся
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint(), false)) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache, null);
+            assertSame(DetectionResult.UNSUPPORTED, analyzer.detectFile(csv));
+            assertThrows(IllegalArgumentException.class,
+                    () -> new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache));
+        }
+
+        // Результат, сохранённый без эвристик, не мешает классификатору
+        DetectionResult guessed;
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint(), true)) {
+            assertEquals(0, cache.getStoredRecords());
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            guessed = analyzer.detectFile(csv);
+            assertEquals("csv", guessed.getExtension());
+            assertEquals(0, cache.getHits());
+        }
+
+        // Эвристический результат берётся из кэша вместе с уверенностью
+        try (DetectionCache cache = new DetectionCache(store, 100, database.getFingerprint(), true)) {
+            FileAnalyzer analyzer = new FileAnalyzer(() -> database, new ChannelHeaderReader(), cache);
+            DetectionResult cached = analyzer.detectFile(csv);
+            assertEquals(1, cache.getHits());
+            assertTrue(cached.isHeuristic());
+            assertEquals("csv", cached.getExtension());
+            assertEquals(guessed.getConfidence(), cached.getConfidence());
+        }
+    }
+
+    private Path resource(String name) throws URISyntaxException {
+        URL resource = getClass().getClassLoader().getResource(name);
+        assertNotNull(resource, "Файл " + name + " не найден в ресурсах");
+        return Paths.get(resource.toURI());
+    }
+}
@@ -0,0 +1,88 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryRestorerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRestoreTree() throws IOException, URISyntaxException {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+        FileExtensionRestorer restorer = new FileExtensionRestorer(new FileAnalyzer(database));
+
+        // Строим дерево каталогов: верный jpg, png с расширением jpg и пустой файл
+        Path nested = Files.createDirectories(tempDir.resolve("a").resolve("b"));
+        Files.copy(resource("test.jpg"), tempDir.resolve("photo.jpg"));
+        Files.copy(resource("test.png"), nested.resolve("image.jpg"));
+        Files.createFile(nested.resolve("empty.pdf"));
+
+        RestoreStatistics statistics = new DirectoryRestorer(restorer, 2).restoreTree(tempDir);
+
+        // Проверяем статистику и результат переименования
+        assertEquals(3, statistics.getProcessed());
+        assertEquals(1, statistics.getRestored());
+        assertEquals(1, statistics.getUnchanged());
+        assertEquals(1, statistics.getFailed());
+        assertTrue(Files.exists(nested.resolve("image.jpg.png")), "Файл должен получить расширение png");
+        assertTrue(Files.exists(tempDir.resolve("photo.jpg")), "Верный файл не должен переименовываться");
+    }
+
+    @Test
+    public void testPipelineRestoreTree() throws IOException, URISyntaxException {
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+        FileExtensionRestorer restorer = new FileExtensionRestorer(analyzer);
+
+        // Больше файлов, чем вмещают очереди этапов, чтобы сработало обратное давление
+        Path nested = Files.createDirectories(tempDir.resolve("a").resolve("b"));
+        for (int i = 0; i < 50; i++) {
+            Files.copy(resource("test.jpg"), tempDir.resolve("photo" + i + ".jpg"));
+            Files.copy(resource("test.png"), nested.resolve("image" + i + ".jpg"));
+        }
+        Files.createFile(nested.resolve("empty.pdf"));
+        Files.createFile(nested.resolve("notes.dat"));
+
+        RestorePipeline pipeline = new RestorePipeline(analyzer, restorer, 4, 2);
+        RestoreStatistics statistics = pipeline.restoreTree(tempDir);
+
+        assertEquals(102, statistics.getProcessed());
+        assertEquals(50, statistics.getRestored());
+        assertEquals(50, statistics.getUnchanged());
+        assertEquals(2, statistics.getFailed());
+        assertTrue(Files.exists(nested.resolve("image7.jpg.png")), "Файл должен получить расширение png");
+
+        // Файл с неподдерживаемым расширением минует чтение и определение формата
+        List<RestorePipeline.StageMetrics> stages = pipeline.getStages();
+        assertEquals(102, stages.get(0).getProcessed());
+        assertEquals(101, stages.get(1).getProcessed());
+        assertEquals(101, stages.get(2).getProcessed());
+        assertEquals(102, stages.get(3).getProcessed());
+        assertTrue(stages.get(0).getMaxQueueDepth() <= stages.get(0).getCapacity());
+    }
+
+    private Path resource(String name) throws URISyntaxException {
+        URL resource = getClass().getClassLoader().getResource(name);
+        assertNotNull(resource, "Файл " + name + " не найден в ресурсах");
+        return Paths.get(resource.toURI());
+    }
+}
@@ -0,0 +1,97 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DuplicateFinderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testFindAndLinkDuplicates() throws Exception {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+
+        // Начальный диапазон разметки — 4096 байтов: маленькие файлы хэшируются целиком по заголовку
+        DuplicateFinder duplicates = new DuplicateFinder(database.getHeaderLayout());
+        FileAnalyzer analyzer = new FileAnalyzer(() -> database, duplicates.wrap(new ChannelHeaderReader()));
+        FileExtensionRestorer restorer = new FileExtensionRestorer(analyzer, null, duplicates);
+
+        Path nested = Files.createDirectories(tempDir.resolve("a"));
+        Files.copy(resource("test.jpg"), tempDir.resolve("photo.jpg"));
+        Files.copy(resource("test.jpg"), nested.resolve("copy.jpg"));
+        Files.copy(resource("test.png"), tempDir.resolve("other.png"));
+        Files.copy(resource("test.png"), nested.resolve("image.jpg"));
+        Files.copy(resource("test.pdf"), tempDir.resolve("single.pdf"));
+        // Файлы с неподдерживаемым расширением анализатор не открывает
+        write(tempDir.resolve("hello.dat"), "hello");
+        write(nested.resolve("hello.dat"), "hello");
+        write(tempDir.resolve("hellx.dat"), "hellx");
+        write(tempDir.resolve("abc.dat"), "abc");
+        write(nested.resolve("abc.dat"), "abc");
+        Files.createFile(tempDir.resolve("empty1.dat"));
+        Files.createFile(tempDir.resolve("empty2.dat"));
+
+        new DirectoryRestorer(restorer, 2).restoreTree(tempDir);
+        List<DuplicateFinder.Group> groups = duplicates.findDuplicates(2);
+
+        // Пустые файлы не учитываются; "hellx" совпадает с "hello" по размеру и заголовку, но не по содержимому
+        assertEquals(4, groups.size());
+        assertEquals(10, duplicates.getFiles());
+        // Из пяти прочитанных анализатором заголовков используются только заголовки вторых файлов
+        // размеров jpg и png: от первого файла размера хранится лишь путь
+        assertEquals(2, duplicates.getReusedHeaders());
+        // Полностью прочитаны только совпавшие по заголовку файлы больше начального диапазона: jpg и png
+        assertEquals(4, duplicates.getFullReads());
+        DuplicateFinder.Group png = groups.get(0);
+        assertEquals(Files.size(resource("test.png")), png.getSize());
+        assertEquals(List.of(nested.resolve("image.jpg.png"), tempDir.resolve("other.png")), png.getFiles(),
+                "Дубликат должен учитываться под восстановленным именем");
+        assertTrue(duplicates.summary(groups).startsWith("Duplicates: 4 groups, 4 duplicate files"));
+
+        // Файл пользователя с похожим на временное именем не затрагивается
+        write(tempDir.resolve("abc.dat.dedup"), "keep");
+        // Дубликат, изменённый после поиска, не заменяется
+        write(tempDir.resolve("photo.jpg"), "changed");
+
+        // Замена дубликатов жёсткими ссылками; повторный поиск уже не находит дубликатов
+        assertEquals(3, duplicates.link(groups));
+        assertTrue(Files.isSameFile(tempDir.resolve("hello.dat"), nested.resolve("hello.dat")));
+        assertTrue(Files.isSameFile(nested.resolve("image.jpg.png"), tempDir.resolve("other.png")));
+        assertEquals("abc", Files.readString(tempDir.resolve("abc.dat")));
+        assertEquals("changed", Files.readString(tempDir.resolve("photo.jpg")));
+        assertEquals("keep", Files.readString(tempDir.resolve("abc.dat.dedup")));
+        Files.delete(tempDir.resolve("abc.dat.dedup"));
+        try (java.util.stream.Stream<Path> files = Files.walk(tempDir)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().contains(".dedup")),
+                    "Временная ссылка не должна оставаться");
+        }
+
+        DuplicateFinder rescan = new DuplicateFinder(database.getHeaderLayout());
+        new DirectoryRestorer(new FileExtensionRestorer(new FileAnalyzer(database), null, rescan), 2)
+                .restoreTree(tempDir);
+        assertTrue(rescan.findDuplicates(2).isEmpty());
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path resource(String name) throws Exception {
+        URL resource = getClass().getClassLoader().getResource(name);
+        assertNotNull(resource, "Файл " + name + " не найден в ресурсах");
+        return Paths.get(resource.toURI());
+    }
+}
@@ -2,9 +2,13 @@ package com.fileanalyzer;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -93,4 +97,89 @@ public class FileAnalyzerTest {
         assertTrue(exception.getMessage().contains("Unsupported file format"),
                 "Сообщение исключения должно содержать 'Unsupported file format'");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testHeaderReadersAgree() throws IOException, UnsupportedFileFormatException {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+
+        // Все способы чтения заголовков должны давать одинаковый результат
+        for (String mode : new String[]{"stream", "channel"}) {
+            FileAnalyzer analyzer = new FileAnalyzer(database, HeaderReader.forMode(mode));
+            for (String name : new String[]{"test.jpg", "test.png", "test.pdf"}) {
+                URL resource = getClass().getClassLoader().getResource(name);
+                assertNotNull(resource, "Файл " + name + " не найден в ресурсах");
+                String expected = name.substring(name.lastIndexOf('.') + 1);
+                assertEquals(expected, analyzer.analyzeFile(new File(resource.getFile())), "Режим чтения " + mode);
+            }
+        }
+    }
+
+    @Test
+    public void testDetectUnrecognizedFileWithoutException() throws IOException {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+
+        // Неизвестный формат возвращается значением, а не исключением
+        File file = File.createTempFile("unknown", ".jpg");
+        file.deleteOnExit();
+        DetectionResult result = analyzer.detectFile(file);
+        assertSame(DetectionResult.UNSUPPORTED, result);
+        assertFalse(result.isDetected());
+        assertNull(result.getExtension());
+
+        // Распознанный файл содержит совпавшую сигнатуру
+        URL resource = getClass().getClassLoader().getResource("test.png");
+        assertNotNull(resource, "Файл test.png не найден в ресурсах");
+        DetectionResult png = analyzer.detectFile(new File(resource.getFile()));
+        assertTrue(png.isDetected());
+        assertEquals("png", png.getExtension());
+        assertEquals("89504E47:png", png.getSignature().toString());
+    }
+
+    @Test
+    public void testDetectInMemory() throws IOException {
+        // Загружаем файл magic_numbers.txt из ресурсов
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+
+        FileTypeDatabase database = new FileTypeDatabase(magicNumbersResource.getFile());
+        FileAnalyzer analyzer = new FileAnalyzer(database);
+
+        // Массив: имя файла не нужно
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+        DetectionResult result = analyzer.detect(png);
+        assertEquals("png", result.getExtension());
+        assertEquals(1.0, result.getConfidence());
+
+        // Буфер анализируется с текущей позиции, позиция не меняется
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put(new byte[]{1, 2}).put(new byte[]{0x25, 0x50, 0x44, 0x46}).flip().position(2);
+        assertEquals("pdf", analyzer.detect(buffer).getExtension());
+        assertEquals(2, buffer.position());
+
+        // Поток с поддержкой mark возвращается к началу данных
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(png));
+        assertEquals("png", analyzer.detect(in).getExtension());
+        assertEquals(0x89, in.read());
+
+        // Из потока без mark читается только окно заголовка
+        ByteArrayInputStream unmarked = new ByteArrayInputStream(new byte[64]) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        DetectionResult unknown = analyzer.detect(unmarked);
+        assertSame(DetectionResult.UNSUPPORTED, unknown);
+        assertEquals(0.0, unknown.getConfidence());
+        assertEquals(64 - database.getHeaderLength(), unmarked.available());
+    }
+}
@@ -0,0 +1,68 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTypeDatabaseReloaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReloadPublishesNewVersion() throws IOException {
+        Path file = tempDir.resolve("magic_numbers.txt");
+        Files.write(file, "FFD8FF:jpg".getBytes(StandardCharsets.UTF_8));
+
+        try (FileTypeDatabaseReloader reloader = new FileTypeDatabaseReloader(file)) {
+            FileTypeDatabase first = reloader.get();
+            assertEquals(1, reloader.getVersion());
+            assertFalse(first.isExtensionSupported("png"));
+
+            Files.write(file, "FFD8FF:jpg\n89504E47:png".getBytes(StandardCharsets.UTF_8));
+            reloader.reload();
+
+            // Новая база опубликована, ранее полученный снимок не изменился
+            assertEquals(2, reloader.getVersion());
+            assertTrue(reloader.get().isExtensionSupported("png"));
+            assertFalse(first.isExtensionSupported("png"));
+            assertTrue(reloader.getLastReloadNanos() > 0);
+
+            // Неудачная загрузка оставляет прежнюю версию
+            Files.delete(file);
+            assertThrows(IOException.class, reloader::reload);
+            assertEquals(2, reloader.getVersion());
+            assertEquals(1, reloader.getFailedReloads());
+            assertTrue(reloader.get().isExtensionSupported("png"));
+        }
+    }
+
+    @Test
+    public void testWatchReloadsReplacedFile() throws IOException, InterruptedException {
+        Path file = tempDir.resolve("magic_numbers.txt");
+        Files.write(file, "FFD8FF:jpg".getBytes(StandardCharsets.UTF_8));
+
+        try (FileTypeDatabaseReloader reloader = new FileTypeDatabaseReloader(file)) {
+            reloader.startWatching();
+
+            // Файл базы заменяется атомарно, как при развёртывании новой версии
+            Path update = tempDir.resolve("magic_numbers.tmp");
+            Files.write(update, "89504E47:png".getBytes(StandardCharsets.UTF_8));
+            Files.move(update, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (reloader.getVersion() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, reloader.getVersion());
+            assertTrue(reloader.get().isExtensionSupported("png"));
+        }
+    }
+}
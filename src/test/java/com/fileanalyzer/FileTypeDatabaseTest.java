@@ -0,0 +1,142 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTypeDatabaseTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLongestSignatureWins() throws IOException {
+        FileTypeDatabase database = database("424D:bmp", "504B:pk", "504B0304:zip", "504B030414000600:docx");
+
+        // Для заголовка выбирается самая длинная совпавшая сигнатура
+        assertEquals("docx", extension(database, "504B03041400060008"));
+        assertEquals("zip", extension(database, "504B030414000800"));
+        assertEquals("pk", extension(database, "504B0506"));
+        assertEquals("bmp", extension(database, "424D3E00"));
+        assertNull(extension(database, "504C"), "Несовпадающий заголовок не должен распознаваться");
+        assertNull(extension(database, "50"), "Заголовок короче сигнатуры не должен распознаваться");
+        assertEquals(8, database.getHeaderLength());
+    }
+
+    @Test
+    public void testSkipsCommentsAndInvalidLines() throws IOException {
+        FileTypeDatabase database = database("# комментарий", "", "ZZ:bad", "FFD8FF:jpg",
+                "????:any", "00&00:none", "FFD8@65537:far");
+
+        assertEquals(1, database.getSignatures().size());
+        assertEquals("jpg", database.getExtensionByMagicNumber("FFD8FFE0"));
+        assertFalse(database.isExtensionSupported("bad"));
+    }
+
+    @Test
+    public void testOffsetAndMaskedSignatures() throws IOException {
+        FileTypeDatabase database = database("52494646:riff", "52494646????????57415645:wav",
+                "52494646????????41564920:avi", "7573746172@257:tar", "F0&F0:high");
+
+        // RIFF-контейнеры различаются байтами 8-11, размер в байтах 4-7 игнорируется
+        assertEquals("wav", extension(database, "52494646A01B000057415645666D7420"));
+        assertEquals("avi", extension(database, "5249464600000100415649204C495354"));
+        assertEquals("riff", extension(database, "524946460000010041424344"));
+        // Побитовая маска сравнивает только старшие биты
+        assertEquals("high", extension(database, "F7"));
+        assertNull(extension(database, "E7"));
+        // Уверенность зависит от количества сравниваемых битов
+        assertEquals(0.125, DetectionResult.of(Signature.parse("F0&F0", "high")).getConfidence());
+        assertEquals(1.0, DetectionResult.of(Signature.parse("52494646????????57415645", "wav")).getConfidence());
+
+        // Сигнатура по смещению 257 задаёт размер окна заголовка
+        assertEquals(262, database.getHeaderLength());
+        byte[] tar = new byte[database.getHeaderLength()];
+        System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, tar, 257, 5);
+        assertEquals("tar", database.match(tar, tar.length).getExtension());
+        assertNull(database.match(tar, 261), "Сигнатура за концом прочитанных данных не должна совпадать");
+    }
+
+    @Test
+    public void testSparseHeaderLayout() throws IOException, UnsupportedFileFormatException {
+        FileTypeDatabase database = database("FFD8FF:jpg", "7573746172@257:tar", "4344303031@32769:iso");
+
+        // Ближние сигнатуры входят в начальный диапазон, дальняя читается отдельно
+        HeaderLayout layout = database.getHeaderLayout();
+        assertEquals("[0,4096)+[32769,32774)", layout.toString());
+        assertEquals(4101, layout.getLength());
+        assertEquals(4096, layout.position(32769));
+        assertEquals(-1, layout.position(10000));
+        assertEquals(32774, database.getHeaderLength());
+
+        byte[] iso = new byte[40000];
+        System.arraycopy("CD001".getBytes(StandardCharsets.US_ASCII), 0, iso, 32769, 5);
+        Path isoFile = tempDir.resolve("disk.iso");
+        Files.write(isoFile, iso);
+        byte[] jpg = new byte[100];
+        jpg[0] = (byte) 0xFF;
+        jpg[1] = (byte) 0xD8;
+        jpg[2] = (byte) 0xFF;
+        Path jpgFile = tempDir.resolve("photo.iso");
+        Files.write(jpgFile, jpg);
+
+        for (String mode : new String[]{"stream", "channel"}) {
+            HeaderReader reader = HeaderReader.forMode(mode);
+            ByteBuffer header = reader.read(isoFile.toFile(), layout);
+            assertEquals(4101, header.limit(), "Режим чтения " + mode);
+            assertEquals("iso", database.match(header, layout, "iso").getExtension());
+            assertNull(database.match(header, null, "iso"), "Без разметки дальняя сигнатура не находится");
+
+            // Короткий файл читается целиком, дальний диапазон пропускается
+            header = reader.read(jpgFile.toFile(), layout);
+            assertEquals(100, header.limit());
+            assertEquals("jpg", database.match(header, layout, "iso").getExtension());
+        }
+        assertEquals("iso", new FileAnalyzer(database).analyzeFile(isoFile.toFile()));
+    }
+
+    @Test
+    public void testSignatureRoundTrip() {
+        assertEquals("52494646????????57415645:wav", Signature.parse("52494646????????57415645", "wav").toString());
+        assertEquals("F0&F0@3:x", Signature.parse("F0&F0@3", "x").toString());
+        assertEquals("4344303031@32769:iso", Signature.parse("4344303031@32769", "iso").toString());
+    }
+
+    @Test
+    public void testClaimedExtensionFastPath() throws IOException {
+        FileTypeDatabase database = database("504B0304:zip", "504B030414000600:docx", "FFD8FF:jpg", "89504E47:png");
+
+        assertTrue(database.isExtensionSupported("docx"));
+        assertFalse(database.isExtensionSupported("gif"));
+        assertEquals(1, database.getSignatures("jpg").size());
+        assertTrue(database.getSignatures("gif").isEmpty());
+
+        // Заявленное расширение не должно менять результат поиска
+        byte[] docx = Signature.hexToBytes("504B03041400060008");
+        assertEquals("docx", database.match(docx, docx.length, "zip").getExtension());
+        assertEquals("docx", database.match(docx, docx.length, "docx").getExtension());
+        byte[] png = Signature.hexToBytes("89504E470D0A1A0A");
+        assertEquals("png", database.match(png, png.length, "jpg").getExtension());
+        assertEquals("png", database.match(png, png.length, "png").getExtension());
+        assertNull(database.match(png, 2, "png"));
+    }
+
+    private FileTypeDatabase database(String... lines) throws IOException {
+        Path file = tempDir.resolve("magic_numbers.txt");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return new FileTypeDatabase(file.toString());
+    }
+
+    private String extension(FileTypeDatabase database, String hex) {
+        byte[] header = Signature.hexToBytes(hex);
+        Signature signature = database.match(header, header.length);
+        return signature == null ? null : signature.getExtension();
+    }
+}
@@ -0,0 +1,158 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenamePlanApplierTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testPlanThenApply() throws IOException, URISyntaxException {
+        FileTypeDatabase database = new FileTypeDatabase(resource("magic_numbers.txt").toString());
+        Path tree = Files.createDirectories(tempDir.resolve("tree"));
+        for (int i = 0; i < 5; i++) {
+            Files.copy(resource("test.png"), tree.resolve("image" + i + ".jpg"));
+        }
+        Files.copy(resource("test.jpg"), tree.resolve("photo.jpg"));
+        // Файл с целевым именем уже существует
+        Files.write(tree.resolve("image0.jpg.png"), new byte[]{1});
+
+        // Проход определения форматов только записывает план
+        Path planFile = tempDir.resolve("rename.plan");
+        RestoreStatistics planned;
+        try (RenamePlan.Writer plan = new RenamePlan.Writer(planFile)) {
+            FileExtensionRestorer restorer = new FileExtensionRestorer(new FileAnalyzer(database), plan);
+            planned = new DirectoryRestorer(restorer, 2).restoreTree(tree);
+        }
+        assertEquals(5, planned.getPlanned());
+        assertEquals(1, planned.getUnchanged());
+        assertEquals(1, planned.getFailed());
+        assertTrue(Files.exists(tree.resolve("image1.jpg")), "В режиме плана файлы не переименовываются");
+        List<String> lines = Files.readAllLines(planFile, StandardCharsets.UTF_8);
+        assertEquals(RenamePlan.HEADER, lines.get(0));
+        assertEquals(6, lines.size());
+
+        // Применение пакетами по 2 записи с разрешением конфликта имён
+        RenamePlanApplier applier = new RenamePlanApplier(2, 2);
+        RestoreStatistics applied = applier.apply(planFile);
+        assertEquals(5, applied.getRestored());
+        assertEquals(1, applier.getCollisions());
+        assertTrue(Files.exists(tree.resolve("image3.jpg.png")));
+        assertTrue(Files.exists(tree.resolve("image0.jpg~1.png")), "Конфликтующий файл получает суффикс");
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(tree.resolve("image0.jpg.png")),
+                "Существующий файл не заменяется");
+        assertTrue(new String(Files.readAllBytes(RenamePlanApplier.checkpointFor(planFile)),
+                StandardCharsets.UTF_8).startsWith("5 "));
+
+        // Повторный запуск после завершения ничего не делает
+        assertEquals(0, new RenamePlanApplier(2, 1).apply(planFile).getProcessed());
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws IOException {
+        Path a = Files.write(tempDir.resolve("a\tb"), new byte[]{1});
+        Path b = Files.write(tempDir.resolve("b"), new byte[]{2});
+        Path c = Files.write(tempDir.resolve("c"), new byte[]{3});
+        Path planFile = tempDir.resolve("rename.plan");
+        try (RenamePlan.Writer plan = new RenamePlan.Writer(planFile)) {
+            plan.add(new RenamePlan.Entry(a, "png", tempDir.resolve("a\tb.png")));
+            plan.add(new RenamePlan.Entry(b, "png", tempDir.resolve("b.png")));
+            plan.add(new RenamePlan.Entry(c, "png", tempDir.resolve("c.png")));
+        }
+
+        // Прерванный запуск: первая запись завершена и учтена в контрольной точке,
+        // вторая выполнена, но контрольная точка сохранена не была
+        Files.move(a, tempDir.resolve("a\tb.png"));
+        Files.move(b, tempDir.resolve("b.png"));
+        RenamePlanApplier.writeCheckpoint(planFile, 1);
+
+        RestoreStatistics statistics = new RenamePlanApplier(10, 1).apply(planFile);
+        assertEquals(2, statistics.getProcessed());
+        assertEquals(1, statistics.getUnchanged());
+        assertEquals(1, statistics.getRestored());
+        assertTrue(Files.exists(tempDir.resolve("c.png")));
+    }
+
+    @Test
+    public void testIgnoresCheckpointOfAnotherPlan() throws IOException {
+        Path a = Files.write(tempDir.resolve("a"), new byte[]{1});
+        Path b = Files.write(tempDir.resolve("b"), new byte[]{2});
+        Path planFile = tempDir.resolve("rename.plan");
+        try (RenamePlan.Writer plan = new RenamePlan.Writer(planFile)) {
+            plan.add(new RenamePlan.Entry(a, "png", tempDir.resolve("a.png")));
+        }
+        RenamePlanApplier.writeCheckpoint(planFile, 1);
+
+        // Новый план удаляет контрольную точку прежнего
+        try (RenamePlan.Writer plan = new RenamePlan.Writer(planFile)) {
+            assertFalse(Files.exists(RenamePlanApplier.checkpointFor(planFile)));
+            plan.add(new RenamePlan.Entry(b, "png", tempDir.resolve("b.png")));
+        }
+        // Контрольная точка, не совпадающая с планом по размеру и времени изменения, не учитывается
+        Files.write(RenamePlanApplier.checkpointFor(planFile), "1 17@0\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, new RenamePlanApplier(10, 1).apply(planFile).getRestored());
+        assertTrue(Files.exists(tempDir.resolve("b.png")));
+        assertTrue(Files.exists(a), "Записи прежнего плана не применяются");
+    }
+
+    @Test
+    public void testNeverReplacesTargetCreatedAfterPlanning() throws IOException {
+        Path source = Files.write(tempDir.resolve("scan"), new byte[]{1});
+        Path planFile = tempDir.resolve("rename.plan");
+        try (RenamePlan.Writer plan = new RenamePlan.Writer(planFile)) {
+            plan.add(new RenamePlan.Entry(source, "png", tempDir.resolve("scan.png")));
+        }
+        // Целевое имя и первое имя с суффиксом заняты после составления плана
+        Files.write(tempDir.resolve("scan.png"), new byte[]{2});
+        Files.write(tempDir.resolve("scan~1.png"), new byte[]{3});
+
+        RenamePlanApplier applier = new RenamePlanApplier(10, 1);
+        assertEquals(1, applier.apply(planFile).getRestored());
+        assertEquals(1, applier.getCollisions());
+        assertArrayEquals(new byte[]{2}, Files.readAllBytes(tempDir.resolve("scan.png")));
+        assertArrayEquals(new byte[]{3}, Files.readAllBytes(tempDir.resolve("scan~1.png")));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(tempDir.resolve("scan~2.png")));
+        assertFalse(Files.exists(source));
+    }
+
+    @Test
+    public void testResumeAfterLinkBeforeUnlink() throws IOException {
+        Path source = Files.write(tempDir.resolve("a.jpg"), new byte[]{1});
+        Path target = tempDir.resolve("a.jpg.png");
+        Path planFile = tempDir.resolve("rename.plan");
+        try (RenamePlan.Writer plan = new RenamePlan.Writer(planFile)) {
+            plan.add(new RenamePlan.Entry(source, "png", target));
+        }
+        // Прерванный запуск успел создать ссылку с целевым именем, но не удалил исходное имя
+        Files.createLink(target, source);
+
+        RenamePlanApplier applier = new RenamePlanApplier(10, 1);
+        RestoreStatistics statistics = applier.apply(planFile);
+        assertEquals(1, statistics.getUnchanged());
+        assertEquals(0, statistics.getRestored());
+        assertEquals(0, applier.getCollisions());
+        assertFalse(Files.exists(source));
+        assertFalse(Files.exists(tempDir.resolve("a.jpg~1.png")), "Файл не должен дублироваться под другим именем");
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(target));
+    }
+
+    private Path resource(String name) throws URISyntaxException {
+        URL resource = getClass().getClassLoader().getResource(name);
+        assertNotNull(resource, "Файл " + name + " не найден в ресурсах");
+        return Paths.get(resource.toURI());
+    }
+}
@@ -0,0 +1,115 @@
+package com.fileanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardReportTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testShardedProcessesAndMerge() throws Exception {
+        // Дерево из 60 файлов в 6 каталогах: половина требует восстановления расширения
+        Path root = Files.createDirectories(tempDir.resolve("tree"));
+        for (int d = 0; d < 6; d++) {
+            Path dir = Files.createDirectories(root.resolve("dir" + d));
+            for (int i = 0; i < 5; i++) {
+                Files.copy(resource("test.jpg"), dir.resolve("photo" + i + ".jpg"));
+                Files.copy(resource("test.png"), dir.resolve("image" + i + ".jpg"));
+            }
+        }
+
+        // Каждый файл относится ровно к одной части при любом способе разбиения
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.filter(Files::isRegularFile).forEach(files::add);
+        }
+        for (Shard.Partition partition : Shard.Partition.values()) {
+            for (Path file : files) {
+                int owners = 0;
+                for (int k = 1; k <= 3; k++) {
+                    owners += new Shard(k, 3, partition).contains(root, file) ? 1 : 0;
+                }
+                assertEquals(1, owners, "Файл должен относиться к одной части: " + file);
+            }
+        }
+        // Переименованный при восстановлении файл остаётся в своей части
+        Path original = root.resolve("dir0").resolve("image0.jpg");
+        Path renamed = root.resolve("dir0").resolve("image0.jpg.png");
+        for (int k = 1; k <= 3; k++) {
+            Shard shard = new Shard(k, 3, Shard.Partition.PATH);
+            assertEquals(shard.contains(root, original), shard.contains(root, renamed));
+        }
+
+        // Три независимых процесса обрабатывают одно дерево без координации
+        URL magicNumbersResource = getClass().getClassLoader().getResource("magic_numbers.txt");
+        assertNotNull(magicNumbersResource, "Файл magic_numbers.txt не найден в ресурсах");
+        String database = Paths.get(magicNumbersResource.toURI()).toString();
+        List<Process> processes = new ArrayList<>();
+        for (int k = 1; k <= 3; k++) {
+            processes.add(java("--db", database, "--threads", "2", "--shard", k + "/3",
+                    "--report", tempDir.resolve("shard" + k + ".report").toString(), root.toString()));
+        }
+        for (Process process : processes) {
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS), "Процесс части не завершился");
+            assertEquals(0, process.exitValue());
+        }
+        assertTrue(Files.exists(root.resolve("dir3").resolve("image4.jpg.png")),
+                "Файл должен получить расширение png");
+
+        // Слияние в отдельном процессе
+        Path merged = tempDir.resolve("merged.report");
+        Process merge = java("--merge", merged.toString(), tempDir.resolve("shard1.report").toString(),
+                tempDir.resolve("shard2.report").toString(), tempDir.resolve("shard3.report").toString());
+        assertTrue(merge.waitFor(60, TimeUnit.SECONDS), "Процесс слияния не завершился");
+
+        ShardReport report = ShardReport.read(merged);
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(report.getShards()));
+        assertTrue(report.getMissingShards().isEmpty());
+        assertEquals(60, report.getStatistics().getProcessed());
+        assertEquals(30, report.getStatistics().getRestored());
+        assertEquals(30, report.getStatistics().getUnchanged());
+        assertEquals(30L, report.getCounters().get("detected.png"));
+        assertEquals(30L, report.getCounters().get("detected.jpg"));
+
+        // Неполное слияние сообщает о недостающих частях, повторная часть отклоняется
+        ShardReport first = ShardReport.read(tempDir.resolve("shard1.report"));
+        ShardReport third = ShardReport.read(tempDir.resolve("shard3.report"));
+        ShardReport partial = ShardReport.merge(Arrays.asList(first, third));
+        assertEquals(Arrays.asList(2), partial.getMissingShards());
+        assertThrows(IllegalArgumentException.class, () -> ShardReport.merge(Arrays.asList(first, first)));
+    }
+
+    /**
+     * Запускает приложение в отдельной JVM с текущим classpath.
+     */
+    private Process java(String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(tempDir.resolve("process" + System.nanoTime() + ".log").toFile()).start();
+    }
+
+    private Path resource(String name) throws Exception {
+        URL resource = getClass().getClassLoader().getResource(name);
+        assertNotNull(resource, "Файл " + name + " не найден в ресурсах");
+        return Paths.get(resource.toURI());
+    }
+}